@@ -114,6 +114,7 @@ public class ChatControlPlugin extends JavaPlugin {
         }
 
         registerUpdateCommands();
+        profileManager.startFlushTask(compatibilityManager);
 
         getServer().getPluginManager().registerEvents(
                 new ChatEventListener(this, chatManager, profileManager, compatibilityManager, messager), this
@@ -264,7 +265,9 @@ public class ChatControlPlugin extends JavaPlugin {
     @Override
     public void onDisable() {
         if (profileManager != null) {
-            profileManager.saveAllProfiles();
+            // Waited for, so the last saves land before the store is closed
+            profileManager.saveAllProfiles().join();
+            profileManager.close();
         }
 
         if (storageManager != null) {
@@ -86,6 +86,18 @@ public class ChatCommandExecutor implements CommandExecutor {
             case "investigation":
                 ChatManager.investigationMode(player, args);
                 break;
+            case "refreshformat":
+                ChatManager.refreshFormatCache(player, args);
+                break;
+            case "logstats":
+                ChatManager.logStats(player);
+                break;
+            case "exportdata":
+                ChatManager.exportData(player);
+                break;
+            case "importdata":
+                ChatManager.importData(player);
+                break;
             case "hide":
                 ChatManager.hideChat(player, args);
                 break;
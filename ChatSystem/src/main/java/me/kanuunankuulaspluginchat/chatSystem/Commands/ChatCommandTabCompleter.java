@@ -40,7 +40,7 @@ public class ChatCommandTabCompleter implements TabCompleter {
             if (player.hasPermission("chat.admin")) {
                 subcommands = new ArrayList<>(subcommands);
                 subcommands.addAll(Arrays.asList(
-                        "mute","unmute", "forcekick", "investigation"
+                        "mute","unmute", "forcekick", "investigation", "refreshformat", "logstats", "exportdata", "importdata"
                 ));
             }
 
@@ -83,6 +83,7 @@ public class ChatCommandTabCompleter implements TabCompleter {
                 case "forcekick":
                 case "ban":
                 case "investigation":
+                case "refreshformat":
                 case "transfer":
                     completions.addAll(Bukkit.getOnlinePlayers().stream()
                             .map(Player::getName)
@@ -143,6 +143,16 @@ public class LanguageManager {
         addTranslation("Chat_Warnings_118", "en", "§cYou are muted in this chat.");
         addTranslation("Chat_Warnings_119", "en", "§cYou are not a member of this chat channel.");
         addTranslation("Chat_Warnings_120", "en", "§cAn error occurred while processing your message.");
+        addTranslation("Chat_Warnings_121", "en", "§7Format cache before refresh: §e");
+        addTranslation("Chat_Warnings_122", "en", "§aChat format cache refreshed.");
+        addTranslation("Chat_Warnings_123", "en", "§cYou are sending messages too fast! Try again in §e");
+        addTranslation("Chat_Warnings_124", "en", "§cYour message is too long! Maximum length: §e");
+        addTranslation("Chat_Warnings_125", "en", "§7Chat log writer: §e");
+        addTranslation("Chat_Warnings_126", "en", "§cThe chat log writer is not running.");
+        addTranslation("Chat_Warnings_127", "en", "§aChat data exported to chats.yml.");
+        addTranslation("Chat_Warnings_128", "en", "§aChat data imported from chats.yml.");
+        addTranslation("Chat_Warnings_129", "en", "§cThis command only works with file storage.");
+        addTranslation("Chat_Warnings_130", "en", "§cSomething went wrong, check the console for details.");
         addTranslation("Compatibility_Text_1", "en", "ChatSystem has been enabled with ");
         addTranslation("Compatibility_Text_2", "en", " compatibility!");
         addTranslation("download_all_failed", "en", "All download attempts failed");
@@ -371,6 +381,16 @@ public class LanguageManager {
         addTranslation("Chat_Warnings_118", "es", "§cEstás silenciado en este chat.");
         addTranslation("Chat_Warnings_119", "es", "§cNo eres miembro de este canal de chat.");
         addTranslation("Chat_Warnings_120", "es", "§cOcurrió un error al procesar tu mensaje.");
+        addTranslation("Chat_Warnings_121", "es", "§7Caché de formato antes de refrescar: §e");
+        addTranslation("Chat_Warnings_122", "es", "§aCaché de formato del chat refrescada.");
+        addTranslation("Chat_Warnings_123", "es", "§c¡Estás enviando mensajes demasiado rápido! Inténtalo de nuevo en §e");
+        addTranslation("Chat_Warnings_124", "es", "§c¡Tu mensaje es demasiado largo! Longitud máxima: §e");
+        addTranslation("Chat_Warnings_125", "es", "§7Registro de chat: §e");
+        addTranslation("Chat_Warnings_126", "es", "§cEl registro de chat no está activo.");
+        addTranslation("Chat_Warnings_127", "es", "§aDatos del chat exportados a chats.yml.");
+        addTranslation("Chat_Warnings_128", "es", "§aDatos del chat importados desde chats.yml.");
+        addTranslation("Chat_Warnings_129", "es", "§cEste comando solo funciona con almacenamiento en archivos.");
+        addTranslation("Chat_Warnings_130", "es", "§cAlgo salió mal, revisa la consola para más detalles.");
         addTranslation("Compatibility_Text_1", "es", "ChatSystem activado con ");
         addTranslation("Compatibility_Text_2", "es", " compatibilidad!");
         addTranslation("Compatibility_Text_2", "es", " compatibilidad!");
@@ -601,6 +621,16 @@ public class LanguageManager {
         addTranslation("Chat_Warnings_118", "fi", "§cOlet mykistetty tässä keskustelussa.");
         addTranslation("Chat_Warnings_119", "fi", "§cEt ole tämän keskustelukanavan jäsen.");
         addTranslation("Chat_Warnings_120", "fi", "§cViestin käsittelyssä tapahtui virhe.");
+        addTranslation("Chat_Warnings_121", "fi", "§7Muotoiluvälimuisti ennen päivitystä: §e");
+        addTranslation("Chat_Warnings_122", "fi", "§aChatin muotoiluvälimuisti päivitetty.");
+        addTranslation("Chat_Warnings_123", "fi", "§cLähetät viestejä liian nopeasti! Yritä uudelleen §e");
+        addTranslation("Chat_Warnings_124", "fi", "§cViestisi on liian pitkä! Enimmäispituus: §e");
+        addTranslation("Chat_Warnings_125", "fi", "§7Chat-lokin kirjoittaja: §e");
+        addTranslation("Chat_Warnings_126", "fi", "§cChat-lokin kirjoittaja ei ole käynnissä.");
+        addTranslation("Chat_Warnings_127", "fi", "§aChat-tiedot viety tiedostoon chats.yml.");
+        addTranslation("Chat_Warnings_128", "fi", "§aChat-tiedot tuotu tiedostosta chats.yml.");
+        addTranslation("Chat_Warnings_129", "fi", "§cTämä komento toimii vain tiedostotallennuksen kanssa.");
+        addTranslation("Chat_Warnings_130", "fi", "§cJokin meni vikaan, katso lisätiedot konsolista.");
         addTranslation("Compatibility_Text_1", "fi", "ChatSystem otettu käyttöön käyttäen ");
         addTranslation("Compatibility_Text_2", "fi", " yhteensopivuutta!");
         addTranslation("download_all_failed", "fi", "Kaikki latausyritykset epäonnistuivat");
@@ -832,6 +862,16 @@ public class LanguageManager {
         addTranslation("Chat_Warnings_118", "sv", "§cDu är avstängd i denna chatt.");
         addTranslation("Chat_Warnings_119", "sv", "§cDu är inte medlem i denna chattkanal.");
         addTranslation("Chat_Warnings_120", "sv", "§cEtt fel uppstod när meddelandet behandlades.");
+        addTranslation("Chat_Warnings_121", "sv", "§7Formatcache före uppdatering: §e");
+        addTranslation("Chat_Warnings_122", "sv", "§aChattens formatcache uppdaterad.");
+        addTranslation("Chat_Warnings_123", "sv", "§cDu skickar meddelanden för snabbt! Försök igen om §e");
+        addTranslation("Chat_Warnings_124", "sv", "§cDitt meddelande är för långt! Maxlängd: §e");
+        addTranslation("Chat_Warnings_125", "sv", "§7Chattloggskrivare: §e");
+        addTranslation("Chat_Warnings_126", "sv", "§cChattloggskrivaren körs inte.");
+        addTranslation("Chat_Warnings_127", "sv", "§aChattdata exporterad till chats.yml.");
+        addTranslation("Chat_Warnings_128", "sv", "§aChattdata importerad från chats.yml.");
+        addTranslation("Chat_Warnings_129", "sv", "§cDetta kommando fungerar bara med fillagring.");
+        addTranslation("Chat_Warnings_130", "sv", "§cNågot gick fel, se konsolen för detaljer.");
         addTranslation("Compatibility_Text_1", "sv", "ChatSystem aktiverad med ");
         addTranslation("Compatibility_Text_2", "sv", " kompatibilitet!");
         addTranslation("download_all_failed", "sv", "Alla nedladdningsförsök misslyckades");
@@ -9,12 +9,20 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 public class UniversalCompatibilityManager {
 
+    // Folia splits the world into region sections of 2^4 x 2^4 chunks by default
+    private static final int FOLIA_REGION_SECTION_SHIFT = 4;
+
     private final JavaPlugin plugin;
     private final ServerType serverType;
     private final Logger logger;
@@ -163,6 +171,15 @@ public class UniversalCompatibilityManager {
         }
     }
 
+    public TaskWrapper runTaskTimerAsync(Runnable task, long delay, long period) {
+        switch (serverType) {
+            case FOLIA:
+                return runFoliaAsyncTimerTask(task, delay, period);
+            default:
+                return new BukkitTaskWrapper(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, task, delay, period));
+        }
+    }
+
     // === PLAYER-SPECIFIC SCHEDULING ===
 
     public void runPlayerTask(Player player, Runnable task) {
@@ -246,6 +263,29 @@ public class UniversalCompatibilityManager {
         }
     }
 
+    // === BATCHED PLAYER FAN-OUT ===
+
+    /**
+     * Runs the action for every given player on the thread that owns that player.
+     * Everywhere except Folia this is a single main thread task. On Folia the players are grouped
+     * by region section and each group gets one region task instead of one task per player.
+     */
+    public void runForPlayers(Collection<? extends Player> players, Consumer<Player> action) {
+        switch (serverType) {
+            case FOLIA:
+                runFoliaRegionBatches(players, action);
+                break;
+            default:
+                List<Player> snapshot = new ArrayList<>(players);
+                runTask(() -> {
+                    for (Player player : snapshot) {
+                        action.accept(player);
+                    }
+                });
+                break;
+        }
+    }
+
     // === ASYNC UTILITIES ===
 
     public <T> CompletableFuture<T> supplyAsync(java.util.function.Supplier<T> supplier) {
@@ -372,6 +412,22 @@ public class UniversalCompatibilityManager {
         }
     }
 
+    private TaskWrapper runFoliaAsyncTimerTask(Runnable task, long delay, long period) {
+        try {
+            Object asyncScheduler = Bukkit.getAsyncScheduler();
+            java.lang.reflect.Method runAtFixedRateMethod = asyncScheduler.getClass()
+                    .getMethod("runAtFixedRate", org.bukkit.plugin.Plugin.class, Consumer.class, long.class, long.class, java.util.concurrent.TimeUnit.class);
+
+            // The async scheduler works in real time, not ticks
+            Object scheduledTask = runAtFixedRateMethod.invoke(asyncScheduler, plugin,
+                    (Consumer<Object>) scheduledTaskObj -> task.run(), Math.max(1L, delay * 50L), period * 50L, java.util.concurrent.TimeUnit.MILLISECONDS);
+            return new FoliaTaskWrapper(scheduledTask);
+        } catch (Exception e) {
+            warning("Failed to run Folia async timer task, falling back to Bukkit scheduler: " + e.getMessage());
+            return new BukkitTaskWrapper(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, task, delay, period));
+        }
+    }
+
     private void runFoliaPlayerTask(Player player, Runnable task) {
         try {
             Object entityScheduler = player.getScheduler();
@@ -463,6 +519,60 @@ public class UniversalCompatibilityManager {
         }
     }
 
+    private void runFoliaRegionBatches(Collection<? extends Player> players, Consumer<Player> action) {
+        Map<RegionKey, List<Player>> batches = new HashMap<>();
+        for (Player player : players) {
+            Location location = player.getLocation();
+            if (location == null || location.getWorld() == null) {
+                runFoliaPlayerTask(player, () -> action.accept(player));
+                continue;
+            }
+            batches.computeIfAbsent(new RegionKey(location), k -> new ArrayList<>()).add(player);
+        }
+
+        for (List<Player> batch : batches.values()) {
+            runFoliaLocationTask(batch.get(0).getLocation(), () -> {
+                for (Player player : batch) {
+                    if (!player.isOnline()) {
+                        continue;
+                    }
+
+                    // The player may have crossed into another region before this task ran
+                    if (Bukkit.isOwnedByCurrentRegion(player)) {
+                        action.accept(player);
+                    } else {
+                        runFoliaPlayerTask(player, () -> action.accept(player));
+                    }
+                }
+            });
+        }
+    }
+
+    private static class RegionKey {
+        private final java.util.UUID worldId;
+        private final int sectionX;
+        private final int sectionZ;
+
+        private RegionKey(Location location) {
+            this.worldId = location.getWorld().getUID();
+            this.sectionX = (location.getBlockX() >> 4) >> FOLIA_REGION_SECTION_SHIFT;
+            this.sectionZ = (location.getBlockZ() >> 4) >> FOLIA_REGION_SECTION_SHIFT;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RegionKey)) return false;
+            RegionKey other = (RegionKey) o;
+            return sectionX == other.sectionX && sectionZ == other.sectionZ && worldId.equals(other.worldId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * worldId.hashCode() + sectionX) + sectionZ;
+        }
+    }
+
     // === GETTERS AND UTILITY METHODS ===
 
     public ServerType getServerType() {
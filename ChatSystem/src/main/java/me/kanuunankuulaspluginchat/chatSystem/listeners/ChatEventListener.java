@@ -2,22 +2,29 @@ package me.kanuunankuulaspluginchat.chatSystem.listeners;
 
 import me.kanuunankuulaspluginchat.chatSystem.ChatControlPlugin;
 import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibilityManager;
+import me.kanuunankuulaspluginchat.chatSystem.Language.LanguageManager;
 import me.kanuunankuulaspluginchat.chatSystem.Language.Messager;
+import me.kanuunankuulaspluginchat.chatSystem.managers.ChatGate;
 import me.kanuunankuulaspluginchat.chatSystem.managers.ChatManager;
+import me.kanuunankuulaspluginchat.chatSystem.managers.ChatRateLimiter;
 import me.kanuunankuulaspluginchat.chatSystem.managers.UserProfileManager;
 import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
 import me.kanuunankuulaspluginchat.chatSystem.models.UserChatProfile;
-import net.milkbowl.vault.chat.Chat;
+import me.kanuunankuulaspluginchat.chatSystem.util.PreRenderedMessage;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public class ChatEventListener implements Listener {
@@ -27,6 +34,11 @@ public class ChatEventListener implements Listener {
     private final UserProfileManager profileManager;
     private final UniversalCompatibilityManager compatibilityManager;
     private final Messager messager;
+    private final ChatGate chatGate;
+    private final boolean prerenderMessages;
+    private final ChatRateLimiter rateLimiter;
+    private final int maxMessageLength;
+    private final String languagekey;
 
     public ChatEventListener(ChatControlPlugin plugin, ChatManager chatManager, UserProfileManager profileManager, UniversalCompatibilityManager universalCompatibilityManager, Messager Messager) {
         this.plugin = plugin;
@@ -34,6 +46,13 @@ public class ChatEventListener implements Listener {
         this.chatManager = chatManager;
         this.profileManager = profileManager;
         this.compatibilityManager = universalCompatibilityManager;
+        this.chatGate = new ChatGate(ChatControlPlugin.getStorageManager());
+        this.prerenderMessages = compatibilityManager.isPaper() && plugin.getConfig().getBoolean("chat.prerender-messages", true);
+        this.rateLimiter = new ChatRateLimiter(plugin.getConfig().getDouble("chat.chat-cooldown", 0), plugin.getConfig().getInt("chat.chat-burst", 3));
+        this.maxMessageLength = plugin.getConfig().getInt("chat.max-message-length", 256);
+
+        String configLanguage = plugin.getConfig().getString("language", "en");
+        this.languagekey = LanguageManager.isLanguageSupported(configLanguage) ? configLanguage : "en";
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
@@ -43,16 +62,57 @@ public class ChatEventListener implements Listener {
 
         event.setCancelled(true);
 
-        ChatControlPlugin.getStorageManager().isUserBanned(player.getUniqueId()).thenAccept(isBanned -> {
-            if (isBanned) {
-                compatibilityManager.runPlayerTask(player, () -> {
-                    messager.sendMessage(player, "Chat_Warnings_31");
+        if (maxMessageLength > 0 && message.length() > maxMessageLength) {
+            String Msg1 = LanguageManager.get("Chat_Warnings_124", languagekey);
+            warnText(player, Msg1 + maxMessageLength);
+            return;
+        }
+
+        UserChatProfile profile = profileManager.getProfile(player.getUniqueId());
+        ChatChannel channel = resolveCurrentChannel(profile);
+
+        long wait = rateLimiter.tryAcquire(player.getUniqueId(), channel.getName());
+        if (wait > 0) {
+            String Msg1 = LanguageManager.get("Chat_Warnings_123", languagekey);
+            warnText(player, Msg1 + String.format("%.1f", wait / 1000.0) + "s");
+            return;
+        }
+
+        switch (chatGate.check(player, channel.getName(), channel)) {
+            case ALLOW:
+                deliverMessage(player, profile, channel, message);
+                break;
+            case BANNED:
+                warn(player, "Chat_Warnings_31");
+                break;
+            case CANNOT_SPEAK:
+                warn(player, "Chat_Warnings_117");
+                break;
+            case MUTED:
+                warn(player, "Chat_Warnings_118");
+                break;
+            case NOT_MEMBER:
+                warn(player, "Chat_Warnings_119");
+                break;
+            default:
+                ChatControlPlugin.getStorageManager().isUserBanned(player.getUniqueId()).thenAccept(isBanned -> {
+                    if (isBanned) {
+                        warn(player, "Chat_Warnings_31");
+                        return;
+                    }
+
+                    processChatMessage(player, profile, channel, message);
                 });
-                return;
-            }
+                break;
+        }
+    }
 
-            processChatMessage(player, message);
-        });
+    private void warn(Player player, String key) {
+        compatibilityManager.runPlayerTask(player, () -> messager.sendMessage(player, key));
+    }
+
+    private void warnText(Player player, String text) {
+        compatibilityManager.runPlayerTask(player, () -> player.sendMessage(text));
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
@@ -130,32 +190,27 @@ public class ChatEventListener implements Listener {
         return channels.stream().allMatch(ChatChannel::isFrozen);
     }
 
-    private void processChatMessage(Player player, String message) {
-        UserChatProfile profile = profileManager.getProfile(player.getUniqueId());
-        String currentChat = profile.getCurrentChat();
-
-        ChatChannel channel = ChatManager.getChannel(currentChat);
+    private ChatChannel resolveCurrentChannel(UserChatProfile profile) {
+        ChatChannel channel = ChatManager.getChannel(profile.getCurrentChat());
         if (channel == null) {
-            currentChat = "public";
             channel = ChatManager.getChannel("public");
             profile.setCurrentChat("public");
         }
+        return channel;
+    }
 
-        final String finalChatName = currentChat;
-        final ChatChannel finalChannel = channel;
+    private void processChatMessage(Player player, UserChatProfile profile, ChatChannel channel, String message) {
+        final String finalChatName = channel.getName();
 
-        if (!finalChannel.canPlayerSpeak(player)) {
-            compatibilityManager.runPlayerTask(player, () -> {
-                messager.sendMessage(player, "Chat_Warnings_117");
-            });
+        if (!channel.canPlayerSpeak(player)) {
+            warn(player, "Chat_Warnings_117");
             return;
         }
 
         ChatControlPlugin.getStorageManager().getChatPermission(player.getUniqueId(), finalChatName)
                 .thenCompose(permission -> {
                     if ("muted".equals(permission)) {
-                        compatibilityManager.runPlayerTask(player, () ->
-                                messager.sendMessage(player, "Chat_Warnings_118"));
+                        warn(player, "Chat_Warnings_118");
                         return CompletableFuture.completedFuture(null);
                     }
 
@@ -167,132 +222,90 @@ public class ChatEventListener implements Listener {
                     }
 
                     if (!isInChat && !finalChatName.equals("public")) {
-                        compatibilityManager.runPlayerTask(player, () ->
-                                messager.sendMessage(player, "Chat_Warnings_119"));
+                        warn(player, "Chat_Warnings_119");
                         return;
                     }
 
-                    compatibilityManager.runPlayerTask(player, () -> {
-                        String formattedMessage = formatMessage(player, message, finalChatName);
-                        sendMessageToChannel(finalChannel, player, formattedMessage, message, finalChatName);
-
-                        ChatControlPlugin.getStorageManager().logChatMessage(finalChatName, player.getName(), message);
-                        profile.recordMessage(finalChatName);
-                    });
+                    deliverMessage(player, profile, channel, message);
                 })
                 .exceptionally(throwable -> {
                     if (throwable != null) {
                         plugin.getLogger().severe("Error processing chat message: " + throwable.getMessage());
-                        compatibilityManager.runPlayerTask(player, () ->
-                                messager.sendMessage(player, "Chat_Warnings_120"));
+                        warn(player, "Chat_Warnings_120");
                     }
                     return null;
                 });
     }
 
-    private String formatMessage(Player player, String message, String chatName) {
-        Chat vaultChat = ChatControlPlugin.getVaultChat();
-        String prefix = "";
-        String suffix = "";
-
-        if (vaultChat != null) {
-            prefix = vaultChat.getPlayerPrefix(player);
-            suffix = vaultChat.getPlayerSuffix(player);
-
-            if (prefix == null) prefix = "";
-            if (suffix == null) suffix = "";
-        }
+    private void deliverMessage(Player player, UserChatProfile profile, ChatChannel channel, String message) {
+        String chatName = channel.getName();
+        String formattedMessage = formatMessage(player, message, channel);
+        sendMessageToChannel(channel, player, formattedMessage, message, chatName);
 
-        ChatChannel channel = ChatManager.getChannel(chatName);
-        String channelPrefix = channel != null ? channel.getDisplayPrefix() : "";
+        ChatControlPlugin.getStorageManager().logChatMessage(chatName, player.getName(), message);
+        profile.recordMessage(chatName);
+    }
 
-        return String.format("%s%s%s%s§f: %s",
-                channelPrefix,
-                prefix,
-                player.getDisplayName(),
-                suffix,
-                message
-        );
+    private String formatMessage(Player player, String message, ChatChannel channel) {
+        return ChatManager.getHeaderCache().getHeader(player, channel) + message;
     }
 
     private void sendMessageToChannel(ChatChannel channel, Player sender, String formattedMessage, String rawMessage, String chatName) {
-        ChatControlPlugin.getStorageManager().getChatMembers(chatName).thenAccept(members -> {
-            compatibilityManager.runTask(() -> {
-                int recipientCount = 0;
-
-                if ("public".equals(chatName)) {
-                    for (Player recipient : Bukkit.getOnlinePlayers()) {
-                        UserChatProfile recipientProfile = profileManager.getProfile(recipient.getUniqueId());
-
-                        boolean shouldReceive = recipientProfile.isChatNotificationsEnabled() || sender.equals(recipient);
-
-                        if (recipientProfile.isChatHidden("public")) {
-                            shouldReceive = false;
-                        }
-
-                        if (!channel.canPlayerReceive(recipient)) {
-                            shouldReceive = false;
-                        }
+        PreRenderedMessage prepared = PreRenderedMessage.of(formattedMessage, prerenderMessages);
 
-                        if (shouldReceive) {
-                            recipient.sendMessage(formattedMessage);
-                            recipientCount++;
-                        }
-                    }
-                } else {
-                    for (Player recipient : Bukkit.getOnlinePlayers()) {
-                        boolean shouldReceive = shouldReceiveMessage(recipient, channel, sender, chatName, members);
+        List<Player> recipients = new ArrayList<>(channel.getAudience());
+        if (!channel.isInAudience(sender) && canSeeOwnMessage(sender, channel)) {
+            recipients.add(sender);
+        }
 
-                        if (shouldReceive) {
-                            recipient.sendMessage(formattedMessage);
-                            recipientCount++;
-                        }
-                    }
-                }
-
-                Bukkit.getConsoleSender().sendMessage(formattedMessage);
-            });
-        }).exceptionally(throwable -> {
-            plugin.getLogger().severe("=== ERROR IN getChatMembers ===");
-            plugin.getLogger().severe("Error: " + throwable.getMessage());
-            throwable.printStackTrace();
-            return null;
-        });
+        compatibilityManager.runForPlayers(recipients, prepared::sendTo);
+        prepared.sendTo(Bukkit.getConsoleSender());
     }
 
-    private boolean shouldReceiveMessage(Player recipient, ChatChannel channel, Player sender, String chatName, java.util.Set<java.util.UUID> chatMembers) {
-        UserChatProfile profile = profileManager.getProfile(recipient.getUniqueId());
-
-        if (sender.equals(recipient)) {
+    private boolean canSeeOwnMessage(Player sender, ChatChannel channel) {
+        if (!"public".equals(channel.getName())) {
             return true;
         }
 
-        if (!profile.isChatNotificationsEnabled()) {
-            return false;
-        }
+        UserChatProfile profile = profileManager.getProfile(sender.getUniqueId());
+        return !profile.isChatHidden(channel.getId()) && channel.canPlayerReceive(sender);
+    }
 
-        if (profile.isChatHidden(channel.getName())) {
-            return false;
+    // Already off the main thread, so the player's chat state can be loaded before they can chat
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            ChatControlPlugin.getStorageManager().preloadPlayerState(event.getUniqueId());
+            profileManager.preloadProfile(event.getUniqueId());
         }
+    }
 
-        if (!channel.canPlayerReceive(recipient)) {
-            return false;
+    // A login refused after pre-login (whitelist, full server, another plugin) never quits, so drop what was preloaded
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) {
+            return;
         }
 
-        if ("public".equals(chatName)) {
-            return true;
+        Player player = event.getPlayer();
+        if (Bukkit.getPlayer(player.getUniqueId()) == null) {
+            ChatControlPlugin.getStorageManager().evictPlayerState(player.getUniqueId());
+            profileManager.unloadProfile(player.getUniqueId());
         }
-
-        boolean isMember = chatMembers != null && chatMembers.contains(recipient.getUniqueId());
-        return isMember;
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
 
-        profileManager.loadProfile(player.getUniqueId());
+        // Covers players who logged in before the database was ready
+        compatibilityManager.runTaskAsync(() -> {
+            if (player.isOnline()) {
+                ChatControlPlugin.getStorageManager().preloadPlayerState(player.getUniqueId());
+            }
+        });
 
+        // Loaded at pre-login
         UserChatProfile profile = profileManager.getProfile(player.getUniqueId());
         if (!profile.isInChat("public")) {
             profile.joinChat("public");
@@ -302,13 +315,19 @@ public class ChatEventListener implements Listener {
 
 
         ChatControlPlugin.getStorageManager().addUserToChat(player.getUniqueId(), "public");
+        ChatManager.getAudienceManager().refreshPlayer(player);
+        ChatManager.getHeaderCache().warm(player);
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
 
-        profileManager.saveProfile(player.getUniqueId());
+        ChatManager.getAudienceManager().removePlayer(player);
+        ChatControlPlugin.getStorageManager().evictPlayerState(player.getUniqueId());
+        ChatManager.getHeaderCache().invalidate(player.getUniqueId());
+        rateLimiter.remove(player.getUniqueId());
+        // Saved by the next profile flush
         profileManager.unloadProfile(player.getUniqueId());
     }
 }
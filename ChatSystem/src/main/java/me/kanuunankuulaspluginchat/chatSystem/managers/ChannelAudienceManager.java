@@ -0,0 +1,104 @@
+package me.kanuunankuulaspluginchat.chatSystem.managers;
+
+import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibilityManager;
+import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
+import me.kanuunankuulaspluginchat.chatSystem.models.UserChatProfile;
+import me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * Keeps every ChatChannel's audience (the online players that should receive its messages)
+ * up to date, so sending a message only has to walk the ready recipients.
+ */
+public class ChannelAudienceManager {
+
+    private final UserProfileManager profileManager;
+    private final StorageManager storageManager;
+    private final UniversalCompatibilityManager compatibilityManager;
+
+    public ChannelAudienceManager(UserProfileManager profileManager, StorageManager storageManager, UniversalCompatibilityManager compatibilityManager) {
+        this.profileManager = profileManager;
+        this.storageManager = storageManager;
+        this.compatibilityManager = compatibilityManager;
+
+        storageManager.getMembershipIndex().setChangeListener(this::onMembershipChanged);
+    }
+
+    public void startRefreshTask(long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+
+        long intervalTicks = intervalSeconds * 20L;
+        compatibilityManager.runTaskTimer(this::refreshAll, intervalTicks, intervalTicks);
+    }
+
+    public void refreshAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            refreshPlayer(player);
+        }
+    }
+
+    public void refreshPlayer(Player player) {
+        UserChatProfile profile = profileManager.getProfile(player.getUniqueId());
+        for (ChatChannel channel : ChatManager.getChannels().values()) {
+            update(player, profile, channel);
+        }
+    }
+
+    public void refreshPlayer(Player player, String chatName) {
+        ChatChannel channel = ChatManager.getChannel(chatName);
+        if (channel != null) {
+            update(player, profileManager.getProfile(player.getUniqueId()), channel);
+        }
+    }
+
+    public void removePlayer(Player player) {
+        for (ChatChannel channel : ChatManager.getChannels().values()) {
+            channel.removeFromAudience(player);
+        }
+    }
+
+    // Called on whatever thread changed the index (storage tasks, the event sync poll), so the refresh runs on the player's own
+    private void onMembershipChanged(UUID playerUuid, String chatName) {
+        Player player = Bukkit.getPlayer(playerUuid);
+        if (player != null) {
+            compatibilityManager.runPlayerTask(player, () -> {
+                if (player.isOnline()) {
+                    refreshPlayer(player, chatName);
+                }
+            });
+        }
+    }
+
+    private void update(Player player, UserChatProfile profile, ChatChannel channel) {
+        if (shouldReceive(player, profile, channel)) {
+            channel.addToAudience(player);
+        } else {
+            channel.removeFromAudience(player);
+        }
+    }
+
+    private boolean shouldReceive(Player player, UserChatProfile profile, ChatChannel channel) {
+        if (!profile.isChatNotificationsEnabled()) {
+            return false;
+        }
+
+        if (profile.isChatHidden(channel.getId())) {
+            return false;
+        }
+
+        if (!channel.canPlayerReceive(player)) {
+            return false;
+        }
+
+        if ("public".equals(channel.getName())) {
+            return true;
+        }
+
+        return storageManager.getMembershipIndex().contains(player.getUniqueId(), channel.getName());
+    }
+}
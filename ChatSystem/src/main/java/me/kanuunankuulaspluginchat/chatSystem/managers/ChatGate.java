@@ -0,0 +1,61 @@
+package me.kanuunankuulaspluginchat.chatSystem.managers;
+
+import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
+import me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * Synchronous chat permission check against cached state only.
+ * Returns UNKNOWN when something is not cached yet so the caller can fall back to the async storage lookups.
+ */
+public class ChatGate {
+
+    public enum Decision {
+        ALLOW,
+        BANNED,
+        CANNOT_SPEAK,
+        MUTED,
+        NOT_MEMBER,
+        UNKNOWN
+    }
+
+    private final StorageManager storageManager;
+
+    public ChatGate(StorageManager storageManager) {
+        this.storageManager = storageManager;
+    }
+
+    public Decision check(Player player, String chatName, ChatChannel channel) {
+        UUID playerId = player.getUniqueId();
+
+        Boolean banned = storageManager.getCachedBanStatus(playerId);
+        if (banned == null) {
+            return Decision.UNKNOWN;
+        }
+        if (banned) {
+            return Decision.BANNED;
+        }
+
+        if (!channel.canPlayerSpeak(player)) {
+            return Decision.CANNOT_SPEAK;
+        }
+
+        if (!storageManager.isChatPermissionCached(playerId, chatName)) {
+            return Decision.UNKNOWN;
+        }
+        if ("muted".equals(storageManager.getCachedChatPermission(playerId, chatName))) {
+            return Decision.MUTED;
+        }
+
+        if ("public".equals(chatName)) {
+            return Decision.ALLOW;
+        }
+
+        if (!storageManager.getMembershipIndex().isLoaded()) {
+            return Decision.UNKNOWN;
+        }
+        return storageManager.getMembershipIndex().contains(playerId, chatName) ? Decision.ALLOW : Decision.NOT_MEMBER;
+    }
+}
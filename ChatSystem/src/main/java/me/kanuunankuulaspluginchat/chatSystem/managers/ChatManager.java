@@ -5,6 +5,7 @@ import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibili
 import me.kanuunankuulaspluginchat.chatSystem.Language.Messager;
 import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
 import me.kanuunankuulaspluginchat.chatSystem.models.UserChatProfile;
+import me.kanuunankuulaspluginchat.chatSystem.storage.ChatLogWriter;
 import me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager;
 import me.kanuunankuulaspluginchat.chatSystem.util.GroupAmount;
 import org.bukkit.Bukkit;
@@ -31,6 +32,8 @@ public class ChatManager {
     private static String defaultLanguageKey;
 
     private static UniversalCompatibilityManager compatibilityManager;
+    private static ChannelAudienceManager audienceManager;
+    private static MessageHeaderCache headerCache;
     private static Boolean displayusername;
     private static boolean globallyFrozen = false;
     static String languagekey;
@@ -46,8 +49,12 @@ public class ChatManager {
         profileManager = profilemanager;
         storageManager = storagemanager;
         compatibilityManager = compatibilitymanager;
+        audienceManager = new ChannelAudienceManager(profilemanager, storagemanager, compatibilityManager);
+        headerCache = new MessageHeaderCache(chatControlPlugin.getConfig().getLong("chat.format-cache-ttl", 60),
+                chatControlPlugin.getConfig().getBoolean("chat.format-cache-stats", false));
 
         initializeDefaultChannels();
+        audienceManager.startRefreshTask(chatControlPlugin.getConfig().getLong("chat.audience-refresh-interval", 30));
         displayusername = chatControlPlugin.getConfig().getBoolean("Display_Admin");
         defaultLanguageKey = GetLanguageKey();
         languagekey = GetLanguageKey();
@@ -74,10 +81,25 @@ public class ChatManager {
     public static ChatChannel getChannel(String name) {
         return channels.get(name.toLowerCase());
     }
+
+    public static void deleteChannel(String name) {
+        String chatName = name.toLowerCase();
+        channels.remove(chatName);
+        headerCache.invalidateChannel(chatName);
+        storageManager.deleteChannel(chatName);
+    }
     public static UniversalCompatibilityManager getCompatibilityManager() {
         return compatibilityManager;
     }
 
+    public static ChannelAudienceManager getAudienceManager() {
+        return audienceManager;
+    }
+
+    public static MessageHeaderCache getHeaderCache() {
+        return headerCache;
+    }
+
     public static void displaycommands(Player player) {
 
         messager.sendMessage(player, "Help_message_1");
@@ -148,6 +170,7 @@ public class ChatManager {
                     ChatChannel channel = new ChatChannel(chatName, "§7[§e" + chatName + "§7] ", true, player.getUniqueId(), description, null);
 
                     channels.put(chatName, channel);
+                    headerCache.invalidateChannel(chatName);
                     storageManager.saveChannel(channel);
 
                     storageManager.setChatPermission(player.getUniqueId(), chatName, "owner", null);
@@ -550,6 +573,7 @@ public class ChatManager {
             }
 
             profile.toggleChatVisibility(chatName);
+            audienceManager.refreshPlayer(player, chatName);
 
             if (profile.isChatHidden(chatName)) {
                 String Msg1 = LanguageManager.get("Chat_Warnings_50", languagekey);
@@ -1131,6 +1155,79 @@ public class ChatManager {
         player.sendMessage(Msg4 + targetProfile.getCurrentChat());
     }
 
+    public static void refreshFormatCache(Player player, String[] args) {
+        if (!player.hasPermission("chat.admin")) {
+            messager.sendMessage(player, "Chat_Warnings_92");
+            return;
+        }
+
+        player.sendMessage(LanguageManager.get("Chat_Warnings_121", languagekey) + headerCache.describeStats());
+
+        if (args.length >= 2) {
+            Player target = Bukkit.getPlayer(args[1]);
+            if (target == null) {
+                messager.sendMessage(player, "Chat_Warnings_14");
+                return;
+            }
+            headerCache.invalidate(target.getUniqueId());
+        } else {
+            headerCache.invalidateAll();
+        }
+
+        headerCache.resetStats();
+        messager.sendMessage(player, "Chat_Warnings_122");
+    }
+
+    public static void logStats(Player player) {
+        if (!player.hasPermission("chat.admin")) {
+            messager.sendMessage(player, "Chat_Warnings_92");
+            return;
+        }
+
+        ChatLogWriter writer = storageManager.getChatLogWriter();
+        if (writer == null) {
+            messager.sendMessage(player, "Chat_Warnings_126");
+            return;
+        }
+
+        player.sendMessage(LanguageManager.get("Chat_Warnings_125", languagekey) + writer.describeStats());
+    }
+
+    public static void exportData(Player player) {
+        if (!player.hasPermission("chat.admin")) {
+            messager.sendMessage(player, "Chat_Warnings_92");
+            return;
+        }
+
+        if (!storageManager.isUsingFileStorage()) {
+            messager.sendMessage(player, "Chat_Warnings_129");
+            return;
+        }
+
+        storageManager.exportChatDataToYaml().thenAccept(success -> {
+            messager.sendMessage(player, success ? "Chat_Warnings_127" : "Chat_Warnings_130");
+        });
+    }
+
+    public static void importData(Player player) {
+        if (!player.hasPermission("chat.admin")) {
+            messager.sendMessage(player, "Chat_Warnings_92");
+            return;
+        }
+
+        if (!storageManager.isUsingFileStorage()) {
+            messager.sendMessage(player, "Chat_Warnings_129");
+            return;
+        }
+
+        storageManager.importChatDataFromYaml().thenAccept(success -> {
+            if (success) {
+                compatibilityManager.runTask(audienceManager::refreshAll);
+            }
+            messager.sendMessage(player, success ? "Chat_Warnings_128" : "Chat_Warnings_130");
+        });
+    }
+
     private void initializeDefaultChannels() {
         UUID systemUUID = UUID.fromString("00000000-0000-0000-0000-000000000000");
 
@@ -1153,6 +1250,7 @@ public class ChatManager {
             for (ChatChannel channel : customChannels) {
                 channels.put(channel.getName(), channel);
             }
+            compatibilityManager.runTask(audienceManager::refreshAll);
         });
 
     }
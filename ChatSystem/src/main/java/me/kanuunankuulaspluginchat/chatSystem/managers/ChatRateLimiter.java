@@ -0,0 +1,58 @@
+package me.kanuunankuulaspluginchat.chatSystem.managers;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per player, per channel token bucket for chat messages.
+ * Each bucket is kept as the time it will be full again (GCRA), so taking a token is a single CAS.
+ */
+public class ChatRateLimiter {
+
+    private final Map<UUID, Map<String, AtomicLong>> buckets = new ConcurrentHashMap<>();
+    private final long intervalMillis;
+    private final long burstMillis;
+
+    public ChatRateLimiter(double cooldownSeconds, int burst) {
+        this.intervalMillis = (long) (cooldownSeconds * 1000L);
+        this.burstMillis = intervalMillis * (Math.max(burst, 1) - 1);
+    }
+
+    public boolean isEnabled() {
+        return intervalMillis > 0;
+    }
+
+    /**
+     * Takes a token for the player in the given chat.
+     * Returns 0 if the message may be sent, otherwise how many milliseconds until the next token.
+     */
+    public long tryAcquire(UUID playerUuid, String chatName) {
+        if (!isEnabled()) {
+            return 0;
+        }
+
+        AtomicLong bucket = buckets.computeIfAbsent(playerUuid, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(chatName.toLowerCase(), k -> new AtomicLong());
+
+        while (true) {
+            long now = System.currentTimeMillis();
+            long fullAt = bucket.get();
+            long start = Math.max(fullAt, now);
+
+            long wait = start - burstMillis - now;
+            if (wait > 0) {
+                return wait;
+            }
+
+            if (bucket.compareAndSet(fullAt, start + intervalMillis)) {
+                return 0;
+            }
+        }
+    }
+
+    public void remove(UUID playerUuid) {
+        buckets.remove(playerUuid);
+    }
+}
@@ -0,0 +1,132 @@
+package me.kanuunankuulaspluginchat.chatSystem.managers;
+
+import me.kanuunankuulaspluginchat.chatSystem.ChatControlPlugin;
+import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
+import net.milkbowl.vault.chat.Chat;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the "[channel] prefix name suffix: " part of chat lines per player so Vault
+ * (and whatever permission plugin sits behind it) is not queried for every message.
+ * Hit/miss timing is only collected when stats are turned on, it is not free on every message.
+ */
+public class MessageHeaderCache {
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final boolean collectStats;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    public MessageHeaderCache(long ttlSeconds, boolean collectStats) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.collectStats = collectStats;
+    }
+
+    public String getHeader(Player player, ChatChannel channel) {
+        long start = collectStats ? System.nanoTime() : 0;
+
+        Entry entry = entries.get(player.getUniqueId());
+        boolean miss = entry == null;
+        if (!miss && ttlMillis > 0) {
+            miss = System.currentTimeMillis() - entry.builtAt > ttlMillis;
+        }
+        if (miss) {
+            entry = build(player, System.currentTimeMillis());
+            entries.put(player.getUniqueId(), entry);
+        }
+
+        String channelPrefix = channel != null ? channel.getDisplayPrefix() : "";
+        String channelName = channel != null ? channel.getName() : "";
+        Entry finalEntry = entry;
+        String header = entry.headers.computeIfAbsent(channelName, k -> channelPrefix + finalEntry.playerPart);
+
+        if (!collectStats) {
+            return header;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (miss) {
+            misses.increment();
+            missNanos.add(elapsed);
+        } else {
+            hits.increment();
+            hitNanos.add(elapsed);
+        }
+        return header;
+    }
+
+    public void warm(Player player) {
+        entries.put(player.getUniqueId(), build(player, System.currentTimeMillis()));
+    }
+
+    public void invalidate(UUID playerUuid) {
+        entries.remove(playerUuid);
+    }
+
+    // A channel that is deleted or created again may come back with a different prefix
+    public void invalidateChannel(String channelName) {
+        for (Entry entry : entries.values()) {
+            entry.headers.remove(channelName);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public String describeStats() {
+        if (!collectStats) {
+            return "stats off (chat.format-cache-stats), " + entries.size() + " cached players";
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long avgHit = hitCount > 0 ? hitNanos.sum() / hitCount : 0;
+        long avgMiss = missCount > 0 ? missNanos.sum() / missCount : 0;
+
+        return hitCount + " hits (avg " + avgHit + " ns), " +
+                missCount + " misses (avg " + avgMiss + " ns), " +
+                entries.size() + " cached players";
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        hitNanos.reset();
+        missNanos.reset();
+    }
+
+    private Entry build(Player player, long now) {
+        Chat vaultChat = ChatControlPlugin.getVaultChat();
+        String prefix = "";
+        String suffix = "";
+
+        if (vaultChat != null) {
+            prefix = vaultChat.getPlayerPrefix(player);
+            suffix = vaultChat.getPlayerSuffix(player);
+
+            if (prefix == null) prefix = "";
+            if (suffix == null) suffix = "";
+        }
+
+        return new Entry(prefix + player.getDisplayName() + suffix + "§f: ", now);
+    }
+
+    private static class Entry {
+        private final String playerPart;
+        private final long builtAt;
+        private final Map<String, String> headers = new ConcurrentHashMap<>();
+
+        private Entry(String playerPart, long builtAt) {
+            this.playerPart = playerPart;
+            this.builtAt = builtAt;
+        }
+    }
+}
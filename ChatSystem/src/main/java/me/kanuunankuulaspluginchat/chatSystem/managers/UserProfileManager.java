@@ -1,85 +1,261 @@
 package me.kanuunankuulaspluginchat.chatSystem.managers;
 
 import me.kanuunankuulaspluginchat.chatSystem.ChatControlPlugin;
+import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibilityManager;
 import me.kanuunankuulaspluginchat.chatSystem.models.UserChatProfile;
+import me.kanuunankuulaspluginchat.chatSystem.storage.ProfileStore;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class UserProfileManager {
 
+    private static final int IMPORT_BATCH_SIZE = 500;
+
     private final ChatControlPlugin plugin;
     private final Map<UUID, UserChatProfile> loadedProfiles = new ConcurrentHashMap<>();
+    // Profiles handed out before their file was read; not saved until it has been, so the file is not overwritten with defaults
+    private final Set<UUID> pendingLoads = ConcurrentHashMap.newKeySet();
+    // Players who quit with unsaved changes; written by the next flush, or taken back if they rejoin first
+    private final Map<UUID, UserChatProfile> unloadedDirty = new ConcurrentHashMap<>();
+    // Old one file per player profiles, read until they have been imported into the store
     private final File profilesDirectory;
+    private final ProfileStore store;
 
     public UserProfileManager(ChatControlPlugin plugin) {
             this.plugin = plugin;
             this.profilesDirectory = new File(plugin.getDataFolder(), "profiles");
 
-            if (!profilesDirectory.exists()) {
-                profilesDirectory.mkdirs();
+            if (!plugin.getDataFolder().exists()) {
+                plugin.getDataFolder().mkdirs();
+            }
+
+            this.store = openStore(new File(plugin.getDataFolder(), "profiles.dat"));
+            if (store != null && profilesDirectory.isDirectory()) {
+                CompletableFuture.runAsync(this::importProfileFiles);
             }
     }
 
+    /**
+     * Starts saving changed profiles in the background, all of them in one write every storage.profile-save-interval seconds.
+     */
+    public void startFlushTask(UniversalCompatibilityManager compatibilityManager) {
+        long intervalTicks = Math.max(1L, plugin.getConfig().getLong("storage.profile-save-interval", 30) * 20L);
+        compatibilityManager.runTaskTimerAsync(this::flushDirtyProfiles, intervalTicks, intervalTicks);
+    }
+
+    private ProfileStore openStore(File file) {
+        ProfileStore profileStore = new ProfileStore(file);
+        try {
+            profileStore.open();
+            return profileStore;
+        } catch (IOException e) {
+            plugin.getLogger().severe("[Translation Unavailable] Failed to open " + file.getName() + ", saving profiles as one file per player: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Never reads the disk. Profiles of online players are loaded at pre-login, so this is normally a map lookup.
+     * Otherwise (online during a reload, or a login that raced the load) a new profile is handed out right away
+     * and the stored one is merged into it in the background.
+     */
     public UserChatProfile getProfile(UUID playerId) {
-        return loadedProfiles.computeIfAbsent(playerId, id -> {
-            UserChatProfile profile = loadProfileFromFile(id);
-            if (profile == null) {
-                profile = new UserChatProfile();
-                saveProfileToFile(id, profile);
-            }
+        UserChatProfile profile = loadedProfiles.get(playerId);
+        if (profile != null) {
+            return profile;
+        }
+
+        profile = takeBackUnloaded(playerId);
+        if (profile != null) {
+            return profile;
+        }
+
+        UserChatProfile created = new UserChatProfile();
+        profile = loadedProfiles.putIfAbsent(playerId, created);
+        if (profile != null) {
             return profile;
+        }
+
+        pendingLoads.add(playerId);
+        CompletableFuture.runAsync(() -> {
+            try {
+                UserChatProfile stored = loadProfileFromFile(playerId);
+                if (stored != null) {
+                    created.mergeStored(stored);
+                }
+            } finally {
+                pendingLoads.remove(playerId);
+            }
         });
+        return created;
+    }
+
+    /**
+     * Reads the player's profile so it is resident before they join. Blocks, so call it off the main thread
+     * (AsyncPlayerPreLoginEvent). If getProfile handed one out meanwhile, its own background load fills it instead.
+     */
+    public void preloadProfile(UUID playerId) {
+        if (loadedProfiles.containsKey(playerId) || takeBackUnloaded(playerId) != null) {
+            return;
+        }
+
+        UserChatProfile stored = loadProfileFromFile(playerId);
+        loadedProfiles.putIfAbsent(playerId, stored != null ? stored : new UserChatProfile());
     }
 
     public void loadProfile(UUID playerId) {
         if (!loadedProfiles.containsKey(playerId)) {
-            CompletableFuture.runAsync(() -> {
-                UserChatProfile profile = loadProfileFromFile(playerId);
-                if (profile == null) {
-                    profile = new UserChatProfile();
-                }
-                loadedProfiles.put(playerId, profile);
-            });
+            CompletableFuture.runAsync(() -> preloadProfile(playerId));
         }
     }
 
+    // The unsaved profile of a player who quit and came back before it was flushed is newer than the stored one
+    private UserChatProfile takeBackUnloaded(UUID playerId) {
+        UserChatProfile unloaded = unloadedDirty.remove(playerId);
+        if (unloaded == null) {
+            return null;
+        }
+        UserChatProfile existing = loadedProfiles.putIfAbsent(playerId, unloaded);
+        return existing != null ? existing : unloaded;
+    }
+
     public void saveProfile(UUID playerId) {
         UserChatProfile profile = loadedProfiles.get(playerId);
-        if (profile != null) {
-            CompletableFuture.runAsync(() -> saveProfileToFile(playerId, profile));
+        if (profile != null && profile.isDirty() && !pendingLoads.contains(playerId)) {
+            CompletableFuture.runAsync(() -> saveProfilesToFile(Map.of(playerId, profile)));
         }
     }
 
+    /**
+     * Drops the profile from memory. Unsaved changes are kept for the next flush instead of being written right away,
+     * so a whole server quitting at once costs one write.
+     */
     public void unloadProfile(UUID playerId) {
-        loadedProfiles.remove(playerId);
+        UserChatProfile profile = loadedProfiles.remove(playerId);
+        if (profile != null && profile.isDirty() && !pendingLoads.contains(playerId)) {
+            unloadedDirty.put(playerId, profile);
+        }
     }
 
-    public void saveAllProfiles() {
-        CompletableFuture.runAsync(() -> {
-            for (Map.Entry<UUID, UserChatProfile> entry : loadedProfiles.entrySet()) {
-                saveProfileToFile(entry.getKey(), entry.getValue());
+    public CompletableFuture<Void> saveAllProfiles() {
+        return CompletableFuture.runAsync(this::flushDirtyProfiles);
+    }
+
+    /**
+     * Writes every changed profile, loaded or recently unloaded, in one batch.
+     */
+    private synchronized void flushDirtyProfiles() {
+        Map<UUID, UserChatProfile> profiles = new HashMap<>(unloadedDirty);
+        for (Map.Entry<UUID, UserChatProfile> entry : loadedProfiles.entrySet()) {
+            if (entry.getValue().isDirty() && !pendingLoads.contains(entry.getKey())) {
+                profiles.put(entry.getKey(), entry.getValue());
             }
-            plugin.getLogger().info("Saved " + loadedProfiles.size() + " user profiles.");
-        });
+        }
+
+        if (profiles.isEmpty()) {
+            return;
+        }
+        if (saveProfilesToFile(profiles)) {
+            unloadedDirty.entrySet().removeIf(entry -> profiles.get(entry.getKey()) == entry.getValue());
+        }
     }
 
-    private UserChatProfile loadProfileFromFile(UUID playerId) {
-        File profileFile = new File(profilesDirectory, playerId.toString() + ".yml");
+    public void close() {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Translation Unavailable] Failed to close the profile store: " + e.getMessage());
+        }
+    }
 
-        if (!profileFile.exists()) {
-            return null;
+    /**
+     * Moves profiles/<uuid>.yml files into the store in batches, then renames the folder to profiles-imported.
+     * Players saved to the store meanwhile are skipped, their stored profile is newer.
+     */
+    private void importProfileFiles() {
+        File[] files = profilesDirectory.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (files == null) {
+            return;
+        }
+
+        Map<UUID, byte[]> batch = new HashMap<>();
+        int imported = 0;
+        try {
+            for (File file : files) {
+                UUID playerId;
+                try {
+                    playerId = UUID.fromString(file.getName().substring(0, file.getName().length() - ".yml".length()));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                if (store.contains(playerId)) {
+                    continue;
+                }
+
+                batch.put(playerId, YamlConfiguration.loadConfiguration(file).saveToString().getBytes(StandardCharsets.UTF_8));
+                if (batch.size() >= IMPORT_BATCH_SIZE) {
+                    imported += importBatch(batch);
+                }
+            }
+            imported += importBatch(batch);
+        } catch (IOException e) {
+            plugin.getLogger().severe("[Translation Unavailable] Failed to import profile files, they are still read from the profiles folder: " + e.getMessage());
+            return;
         }
 
+        File importedDirectory = new File(plugin.getDataFolder(), "profiles-imported");
+        if (!importedDirectory.exists() && profilesDirectory.renameTo(importedDirectory)) {
+            plugin.getLogger().info("[Translation Unavailable] Imported " + imported + " profile files into profiles.dat, the old files were moved to profiles-imported.");
+        } else {
+            plugin.getLogger().warning("[Translation Unavailable] Imported " + imported + " profile files into profiles.dat, but could not rename the profiles folder.");
+        }
+    }
+
+    private int importBatch(Map<UUID, byte[]> batch) throws IOException {
+        // Players saved while this batch was being read are skipped
+        int written = store.writeAbsent(batch);
+        batch.clear();
+        return written;
+    }
+
+    private FileConfiguration readStoredProfile(UUID playerId) throws IOException, InvalidConfigurationException {
+        if (store != null) {
+            byte[] data = store.read(playerId);
+            if (data != null) {
+                YamlConfiguration config = new YamlConfiguration();
+                config.loadFromString(new String(data, StandardCharsets.UTF_8));
+                return config;
+            }
+        }
+
+        File profileFile = new File(profilesDirectory, playerId.toString() + ".yml");
+        return profileFile.exists() ? YamlConfiguration.loadConfiguration(profileFile) : null;
+    }
+
+    private UserChatProfile loadProfileFromFile(UUID playerId) {
         try {
-            FileConfiguration config = YamlConfiguration.loadConfiguration(profileFile);
+            FileConfiguration config = readStoredProfile(playerId);
+            if (config == null) {
+                return null;
+            }
+
             UserChatProfile profile = new UserChatProfile();
 
             if (config.contains("joinedChats")) {
@@ -94,7 +270,7 @@ public class UserProfileManager {
 
             if (config.contains("hiddenChats")) {
                 for (String chat : config.getStringList("hiddenChats")) {
-                    profile.hideChat(chat);
+                    profile.restoreHiddenChat(chat);
                 }
             }
 
@@ -106,24 +282,22 @@ public class UserProfileManager {
                 profile.setChatSounds(config.getBoolean("chat.default-sounds", false));
             }
 
-            if (config.contains("messageCounts")) {
-                for (String chat : config.getConfigurationSection("messageCounts").getKeys(false)) {
-                    int count = config.getInt("messageCounts." + chat);
-                    for (int i = 0; i < count; i++) {
-                        profile.recordMessage(chat);
-                    }
-                }
+            Set<String> statChats = new HashSet<>();
+            ConfigurationSection messageCounts = config.getConfigurationSection("messageCounts");
+            if (messageCounts != null) {
+                statChats.addAll(messageCounts.getKeys(false));
+            }
+            ConfigurationSection lastMessageTimes = config.getConfigurationSection("lastMessageTimes");
+            if (lastMessageTimes != null) {
+                statChats.addAll(lastMessageTimes.getKeys(false));
             }
 
-            if (config.contains("lastMessageTimes")) {
-                for (String chat : config.getConfigurationSection("lastMessageTimes").getKeys(false)) {
-                    long time = config.getLong("lastMessageTimes." + chat);
-                    if (time > System.currentTimeMillis() - 86400000) {
-                        profile.recordMessage(chat);
-                    }
-                }
+            for (String chat : statChats) {
+                profile.restoreMessageStats(chat, config.getInt("messageCounts." + chat), config.getLong("lastMessageTimes." + chat));
             }
 
+            // Filled through the setters above, but nothing in it differs from what is stored
+            profile.markSaved(profile.getVersion());
             return profile;
 
         } catch (Exception e) {
@@ -132,42 +306,69 @@ public class UserProfileManager {
         }
     }
 
-    private void saveProfileToFile(UUID playerId, UserChatProfile profile) {
-        File profileFile = new File(profilesDirectory, playerId.toString() + ".yml");
+    // One write to the store for all of them. Returns false if nothing was saved
+    private boolean saveProfilesToFile(Map<UUID, UserChatProfile> profiles) {
+        // Taken before serializing, so changes made during the write are not marked as saved
+        Map<UUID, Long> versions = new HashMap<>();
+        for (Map.Entry<UUID, UserChatProfile> entry : profiles.entrySet()) {
+            versions.put(entry.getKey(), entry.getValue().getVersion());
+        }
 
         try {
-            FileConfiguration config = new YamlConfiguration();
+            if (store != null) {
+                Map<UUID, byte[]> records = new HashMap<>();
+                for (Map.Entry<UUID, UserChatProfile> entry : profiles.entrySet()) {
+                    records.put(entry.getKey(), toConfig(entry.getValue()).saveToString().getBytes(StandardCharsets.UTF_8));
+                }
+                store.writeAll(records);
+            } else {
+                if (!profilesDirectory.exists()) {
+                    profilesDirectory.mkdirs();
+                }
+                for (Map.Entry<UUID, UserChatProfile> entry : profiles.entrySet()) {
+                    toConfig(entry.getValue()).save(new File(profilesDirectory, entry.getKey().toString() + ".yml"));
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("[Translation Unavailable] Failed to save " + profiles.size() + " profiles: " + e.getMessage());
+            return false;
+        }
 
-            config.set("joinedChats", profile.getJoinedChats().toArray(new String[0]));
+        for (Map.Entry<UUID, UserChatProfile> entry : profiles.entrySet()) {
+            entry.getValue().markSaved(versions.get(entry.getKey()));
+        }
+        return true;
+    }
 
-            config.set("currentChat", profile.getCurrentChat());
+    private FileConfiguration toConfig(UserChatProfile profile) {
+        FileConfiguration config = new YamlConfiguration();
 
-            config.set("hiddenChats", profile.getHiddenChats().toArray(new String[0]));
+        config.set("joinedChats", profile.getJoinedChats().toArray(new String[0]));
 
-            config.set("chatNotifications", profile.isChatNotificationsEnabled());
-            config.set("chatSounds", profile.isChatSoundsEnabled());
+        config.set("currentChat", profile.getCurrentChat());
 
-            for (String chat : profile.getJoinedChats()) {
-                int count = profile.getMessageCount(chat);
-                if (count > 0) {
-                    config.set("messageCounts." + chat, count);
-                }
-            }
+        config.set("hiddenChats", profile.getHiddenChats().toArray(new String[0]));
 
-            for (String chat : profile.getJoinedChats()) {
-                long time = profile.getLastMessageTime(chat);
-                if (time > 0) {
-                    config.set("lastMessageTimes." + chat, time);
-                }
+        config.set("chatNotifications", profile.isChatNotificationsEnabled());
+        config.set("chatSounds", profile.isChatSoundsEnabled());
+
+        for (String chat : profile.getJoinedChats()) {
+            int count = profile.getMessageCount(chat);
+            if (count > 0) {
+                config.set("messageCounts." + chat, count);
             }
+        }
 
-            config.set("profileCreated", profile.getProfileCreated());
+        for (String chat : profile.getJoinedChats()) {
+            long time = profile.getLastMessageTime(chat);
+            if (time > 0) {
+                config.set("lastMessageTimes." + chat, time);
+            }
+        }
 
-            config.save(profileFile);
+        config.set("profileCreated", profile.getProfileCreated());
 
-        } catch (IOException e) {
-            plugin.getLogger().warning("[Translation Unavailable] Failed to save profile for " + playerId + ": " + e.getMessage());
-        }
+        return config;
     }
 
     public int getTotalLoadedProfiles() {
@@ -182,8 +383,12 @@ public class UserProfileManager {
         Bukkit.getLogger().info("[Translation Unavailable] === Profile Manager Statistics ===");
         Bukkit.getLogger().info("[Translation Unavailable] Loaded profiles: " + loadedProfiles.size());
 
-        int totalFiles = profilesDirectory.listFiles() != null ? profilesDirectory.listFiles().length : 0;
-        Bukkit.getLogger().info("[Translation Unavailable] Total profile files: " + totalFiles);
+        if (store != null) {
+            Bukkit.getLogger().info("[Translation Unavailable] Stored profiles: " + store.size());
+        } else {
+            File[] files = profilesDirectory.listFiles();
+            Bukkit.getLogger().info("[Translation Unavailable] Total profile files: " + (files != null ? files.length : 0));
+        }
 
         int totalMessages = 0;
         int totalChats = 0;
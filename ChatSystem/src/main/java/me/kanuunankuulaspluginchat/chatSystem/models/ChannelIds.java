@@ -0,0 +1,63 @@
+package me.kanuunankuulaspluginchat.chatSystem.models;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every chat name a small int id for the lifetime of the server, so profiles can keep their chats as bits
+ * and the message path can compare ints instead of lowercasing and hashing names.
+ * Ids are never reused, a deleted channel keeps its id in case it is created again.
+ */
+public final class ChannelIds {
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16];
+    private static int count = 0;
+
+    private ChannelIds() {
+    }
+
+    /**
+     * Id of the chat, assigned on first use. Names are lowercased like ChatChannel names.
+     */
+    public static int intern(String chatName) {
+        Integer id = ids.get(chatName);
+        if (id != null) {
+            return id;
+        }
+
+        String lowerChatName = chatName.toLowerCase();
+        synchronized (ChannelIds.class) {
+            id = ids.get(lowerChatName);
+            if (id != null) {
+                return id;
+            }
+
+            String[] current = names;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[count] = lowerChatName;
+            // Published before the id so a reader holding the id always finds the name
+            names = current;
+            ids.put(lowerChatName, count);
+            return count++;
+        }
+    }
+
+    /**
+     * Id of the chat, or -1 if no chat of that name has been seen. Only allocates for names that are not lowercase.
+     */
+    public static int find(String chatName) {
+        Integer id = ids.get(chatName);
+        if (id == null) {
+            id = ids.get(chatName.toLowerCase());
+        }
+        return id != null ? id : -1;
+    }
+
+    public static String name(int id) {
+        return names[id];
+    }
+}
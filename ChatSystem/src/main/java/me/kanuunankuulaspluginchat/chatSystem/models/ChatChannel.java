@@ -3,12 +3,14 @@ package me.kanuunankuulaspluginchat.chatSystem.models;
 import me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager;
 import org.bukkit.entity.Player;
 
+import java.util.Collections;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ChatChannel {
     private final String name;
+    private final int id;
     private final String displayPrefix;
     private final boolean isPrivate;
     private final String prefix;
@@ -17,6 +19,7 @@ public class ChatChannel {
     private final Set<UUID> trusted = ConcurrentHashMap.newKeySet();
     private final Set<UUID> muted = ConcurrentHashMap.newKeySet();
     private final Set<UUID> banned = ConcurrentHashMap.newKeySet();
+    private final Set<Player> audience = ConcurrentHashMap.newKeySet();
     private final long createdTime;
     private String description;
     private UUID owner;
@@ -29,6 +32,7 @@ public class ChatChannel {
 
     public ChatChannel(String name, String displayPrefix, boolean isPrivate, UUID owner, String description, String requiredPermission) {
         this.name = name.toLowerCase();
+        this.id = ChannelIds.intern(this.name);
         this.displayPrefix = displayPrefix;
         this.prefix = displayPrefix;
 
@@ -45,6 +49,8 @@ public class ChatChannel {
 
     public String getName() { return name; }
 
+    public int getId() { return id; }
+
     public String getDisplayPrefix() {
         return displayPrefix;
     }
@@ -249,6 +255,22 @@ public class ChatChannel {
         banned.remove(playerId);
     }
 
+    public Set<Player> getAudience() {
+        return Collections.unmodifiableSet(audience);
+    }
+
+    public boolean isInAudience(Player player) {
+        return audience.contains(player);
+    }
+
+    public void addToAudience(Player player) {
+        audience.add(player);
+    }
+
+    public void removeFromAudience(Player player) {
+        audience.remove(player);
+    }
+
     public Set<UUID> getManagers() {
         return Set.copyOf(managers);
     }
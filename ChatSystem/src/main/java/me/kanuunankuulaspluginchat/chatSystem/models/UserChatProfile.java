@@ -1,21 +1,26 @@
 package me.kanuunankuulaspluginchat.chatSystem.models;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UserChatProfile {
-    private final Set<String> joinedChats = ConcurrentHashMap.newKeySet();
-    private final Set<String> hiddenChats = ConcurrentHashMap.newKeySet();
-    private final Map<String, Long> lastMessageTime = new ConcurrentHashMap<>();
-    private final Map<String, Integer> messageCount = new ConcurrentHashMap<>();
+    // Chats by ChannelIds id. Never changed once published, a change swaps in a new copy so reads need no lock
+    private volatile BitSet joinedChats = new BitSet();
+    private volatile BitSet hiddenChats = new BitSet();
+    // Indexed by ChannelIds id, guarded by this
+    private int[] messageCount = new int[0];
+    private long[] lastMessageTime = new long[0];
     private final long profileCreated;
     private String currentChat = "public";
     private boolean chatNotifications = true;
     private boolean chatSounds = true;
+    // Bumped by every change; the profile needs saving while it differs from the version last saved
+    private final AtomicLong version = new AtomicLong();
+    private volatile long savedVersion = 0;
 
     public UserChatProfile() {
         this.profileCreated = System.currentTimeMillis();
-        this.joinedChats.add("public");
+        this.joinedChats.set(ChannelIds.intern("public"));
     }
 
     public String getCurrentChat() {
@@ -24,78 +29,140 @@ public class UserChatProfile {
 
     public void setCurrentChat(String chatName) {
         this.currentChat = chatName;
+        changed();
     }
 
     public Set<String> getJoinedChats() {
-        return joinedChats;
+        return toNames(joinedChats);
     }
 
     public boolean isInChat(String chatName) {
-        return joinedChats.contains(chatName);
+        return isInChat(ChannelIds.find(chatName));
     }
 
-    public void joinChat(String chatName) {
-        joinedChats.add(chatName.toLowerCase());
+    public boolean isInChat(int chatId) {
+        return chatId >= 0 && joinedChats.get(chatId);
+    }
+
+    public synchronized void joinChat(String chatName) {
+        joinedChats = with(joinedChats, ChannelIds.intern(chatName), true);
         if (currentChat == null || currentChat.equals("public")) {
             currentChat = chatName.toLowerCase();
         }
+        changed();
     }
 
-    public void leaveChat(String chatName) {
+    public synchronized void leaveChat(String chatName) {
         String lowerChatName = chatName.toLowerCase();
-        joinedChats.remove(lowerChatName);
+        int chatId = ChannelIds.find(lowerChatName);
+        BitSet joined = chatId >= 0 ? with(joinedChats, chatId, false) : (BitSet) joinedChats.clone();
 
         if (lowerChatName.equals(currentChat)) {
-            if (!joinedChats.isEmpty()) {
-                currentChat = joinedChats.iterator().next();
+            if (!joined.isEmpty()) {
+                currentChat = ChannelIds.name(joined.nextSetBit(0));
             } else {
                 currentChat = "public";
-                joinedChats.add("public");
+                joined.set(ChannelIds.intern("public"));
             }
         }
+        joinedChats = joined;
+        changed();
     }
 
     public Set<String> getHiddenChats() {
-        return hiddenChats;
+        return toNames(hiddenChats);
     }
 
     public boolean isChatHidden(String chatName) {
-        return hiddenChats.contains(chatName.toLowerCase());
+        return isChatHidden(ChannelIds.find(chatName));
     }
 
-    public void hideChat(String chatName) {
-        hiddenChats.add(chatName.toLowerCase());
+    public boolean isChatHidden(int chatId) {
+        return chatId >= 0 && hiddenChats.get(chatId);
     }
 
-    public void unhideChat(String chatName) {
-        hiddenChats.remove(chatName.toLowerCase());
+    // Names typed by players only get looked up, an unknown one is no chat and must not take up an id for good
+    public synchronized void hideChat(String chatName) {
+        setHidden(ChannelIds.find(chatName), true);
     }
 
-    public void toggleChatVisibility(String chatName) {
-        String lowerChatName = chatName.toLowerCase();
-        if (hiddenChats.contains(lowerChatName)) {
-            hiddenChats.remove(lowerChatName);
-        } else {
-            hiddenChats.add(lowerChatName);
+    public synchronized void unhideChat(String chatName) {
+        setHidden(ChannelIds.find(chatName), false);
+    }
+
+    public synchronized void toggleChatVisibility(String chatName) {
+        int chatId = ChannelIds.find(chatName);
+        setHidden(chatId, chatId >= 0 && !hiddenChats.get(chatId));
+    }
+
+    /**
+     * Hides a chat read from a stored profile. It was a real chat when it was stored, so it keeps its id
+     * even if the channel is not loaded yet.
+     */
+    public synchronized void restoreHiddenChat(String chatName) {
+        setHidden(ChannelIds.intern(chatName), true);
+    }
+
+    private void setHidden(int chatId, boolean hidden) {
+        if (chatId < 0) {
+            return;
         }
+        hiddenChats = with(hiddenChats, chatId, hidden);
+        changed();
     }
 
     public void recordMessage(String chatName) {
-        String lowerChatName = chatName.toLowerCase();
-        lastMessageTime.put(lowerChatName, System.currentTimeMillis());
-        messageCount.merge(lowerChatName, 1, Integer::sum);
+        int chatId = ChannelIds.find(chatName);
+        if (chatId < 0) {
+            return;
+        }
+        synchronized (this) {
+            ensureStatsCapacity(chatId);
+            lastMessageTime[chatId] = System.currentTimeMillis();
+            messageCount[chatId]++;
+        }
+        changed();
     }
 
-    public long getLastMessageTime(String chatName) {
-        return lastMessageTime.getOrDefault(chatName.toLowerCase(), 0L);
+    /**
+     * Sets a chat's message count and last message time as stored, in one step however many messages it counts.
+     */
+    public void restoreMessageStats(String chatName, int count, long lastMessageTime) {
+        int chatId = ChannelIds.intern(chatName);
+        synchronized (this) {
+            ensureStatsCapacity(chatId);
+            messageCount[chatId] = count;
+            if (lastMessageTime > 0) {
+                this.lastMessageTime[chatId] = lastMessageTime;
+            }
+        }
+        changed();
+    }
+
+    private void ensureStatsCapacity(int chatId) {
+        if (chatId >= messageCount.length) {
+            int size = Math.max(chatId + 1, messageCount.length * 2);
+            messageCount = Arrays.copyOf(messageCount, size);
+            lastMessageTime = Arrays.copyOf(lastMessageTime, size);
+        }
     }
 
-    public int getMessageCount(String chatName) {
-        return messageCount.getOrDefault(chatName.toLowerCase(), 0);
+    public synchronized long getLastMessageTime(String chatName) {
+        int chatId = ChannelIds.find(chatName);
+        return chatId >= 0 && chatId < lastMessageTime.length ? lastMessageTime[chatId] : 0L;
     }
 
-    public int getTotalMessageCount() {
-        return messageCount.values().stream().mapToInt(Integer::intValue).sum();
+    public synchronized int getMessageCount(String chatName) {
+        int chatId = ChannelIds.find(chatName);
+        return chatId >= 0 && chatId < messageCount.length ? messageCount[chatId] : 0;
+    }
+
+    public synchronized int getTotalMessageCount() {
+        int total = 0;
+        for (int count : messageCount) {
+            total += count;
+        }
+        return total;
     }
 
     public boolean isChatNotificationsEnabled() {
@@ -104,6 +171,7 @@ public class UserChatProfile {
 
     public void setChatNotifications(boolean enabled) {
         this.chatNotifications = enabled;
+        changed();
     }
 
     public boolean isChatSoundsEnabled() {
@@ -112,6 +180,65 @@ public class UserChatProfile {
 
     public void setChatSounds(boolean enabled) {
         this.chatSounds = enabled;
+        changed();
+    }
+
+    /**
+     * Adds a stored profile into this one, which was handed out before the stored one was read.
+     * Chats joined and messages counted meanwhile are kept, settings come from the stored profile.
+     */
+    public void mergeStored(UserChatProfile stored) {
+        BitSet storedJoined = stored.joinedChats;
+        BitSet storedHidden = stored.hiddenChats;
+        int[] storedCounts;
+        long[] storedTimes;
+        synchronized (stored) {
+            storedCounts = stored.messageCount.clone();
+            storedTimes = stored.lastMessageTime.clone();
+        }
+
+        synchronized (this) {
+            BitSet joined = (BitSet) joinedChats.clone();
+            joined.or(storedJoined);
+            joinedChats = joined;
+
+            BitSet hidden = (BitSet) hiddenChats.clone();
+            hidden.or(storedHidden);
+            hiddenChats = hidden;
+
+            ensureStatsCapacity(storedCounts.length - 1);
+            for (int chatId = 0; chatId < storedCounts.length; chatId++) {
+                messageCount[chatId] += storedCounts[chatId];
+                lastMessageTime[chatId] = Math.max(lastMessageTime[chatId], storedTimes[chatId]);
+            }
+
+            if ("public".equals(currentChat)) {
+                currentChat = stored.currentChat;
+            }
+        }
+        chatNotifications = stored.chatNotifications;
+        chatSounds = stored.chatSounds;
+        changed();
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public boolean isDirty() {
+        return version.get() != savedVersion;
+    }
+
+    /**
+     * Records that the profile as it was at savedAt (a getVersion taken before serializing) is stored.
+     * Changes made while it was being written keep it dirty.
+     */
+    public void markSaved(long savedAt) {
+        savedVersion = savedAt;
     }
 
     public long getProfileCreated() {
@@ -119,41 +246,53 @@ public class UserChatProfile {
     }
 
     public List<String> getVisibleChats() {
-        List<String> visible = new ArrayList<>();
-        for (String chat : joinedChats) {
-            if (!hiddenChats.contains(chat)) {
-                visible.add(chat);
-            }
-        }
-        return visible;
+        BitSet visible = (BitSet) joinedChats.clone();
+        visible.andNot(hiddenChats);
+        return new ArrayList<>(toNames(visible));
     }
 
     public boolean canSwitchToChat(String chatName) {
-        return joinedChats.contains(chatName.toLowerCase());
+        return isInChat(chatName);
     }
 
-    public void leaveAllChats() {
-        joinedChats.clear();
-        joinedChats.add("public");
+    public synchronized void leaveAllChats() {
+        BitSet joined = new BitSet();
+        joined.set(ChannelIds.intern("public"));
+        joinedChats = joined;
         currentChat = "public";
-        hiddenChats.clear();
+        hiddenChats = new BitSet();
+        changed();
     }
 
     public Map<String, Object> getChatActivity() {
         Map<String, Object> activity = new HashMap<>();
-        activity.put("joinedChats", new ArrayList<>(joinedChats));
+        activity.put("joinedChats", new ArrayList<>(getJoinedChats()));
         activity.put("currentChat", currentChat);
         activity.put("totalMessages", getTotalMessageCount());
-        activity.put("hiddenChats", new ArrayList<>(hiddenChats));
+        activity.put("hiddenChats", new ArrayList<>(getHiddenChats()));
         return activity;
     }
 
+    private static BitSet with(BitSet chats, int chatId, boolean present) {
+        BitSet copy = (BitSet) chats.clone();
+        copy.set(chatId, present);
+        return copy;
+    }
+
+    private static Set<String> toNames(BitSet chats) {
+        Set<String> names = new LinkedHashSet<>();
+        for (int chatId = chats.nextSetBit(0); chatId >= 0; chatId = chats.nextSetBit(chatId + 1)) {
+            names.add(ChannelIds.name(chatId));
+        }
+        return names;
+    }
+
     @Override
     public String toString() {
         return "UserChatProfile{" +
-                "joinedChats=" + joinedChats.size() +
+                "joinedChats=" + joinedChats.cardinality() +
                 ", currentChat='" + currentChat + '\'' +
-                ", hiddenChats=" + hiddenChats.size() +
+                ", hiddenChats=" + hiddenChats.cardinality() +
                 ", totalMessages=" + getTotalMessageCount() +
                 ", notifications=" + chatNotifications +
                 '}';
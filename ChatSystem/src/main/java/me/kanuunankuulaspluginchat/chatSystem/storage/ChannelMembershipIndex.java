@@ -0,0 +1,68 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory channel -> members index. StorageManager writes through to it on every
+ * membership change so the chat path can resolve recipients without a storage lookup.
+ */
+public class ChannelMembershipIndex {
+
+    private final Map<String, Set<UUID>> membersByChat = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+    private volatile BiConsumer<UUID, String> changeListener;
+
+    public void setChangeListener(BiConsumer<UUID, String> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    public void add(UUID playerUuid, String chatName) {
+        if (membersByChat.computeIfAbsent(chatName, k -> ConcurrentHashMap.newKeySet()).add(playerUuid)) {
+            fireChange(playerUuid, chatName);
+        }
+    }
+
+    public void remove(UUID playerUuid, String chatName) {
+        Set<UUID> members = membersByChat.get(chatName);
+        if (members != null && members.remove(playerUuid)) {
+            fireChange(playerUuid, chatName);
+        }
+    }
+
+    private void fireChange(UUID playerUuid, String chatName) {
+        BiConsumer<UUID, String> listener = changeListener;
+        if (listener != null) {
+            listener.accept(playerUuid, chatName);
+        }
+    }
+
+    public boolean contains(UUID playerUuid, String chatName) {
+        Set<UUID> members = membersByChat.get(chatName);
+        return members != null && members.contains(playerUuid);
+    }
+
+    public Set<UUID> getMembers(String chatName) {
+        Set<UUID> members = membersByChat.get(chatName);
+        return members != null ? Collections.unmodifiableSet(members) : Collections.emptySet();
+    }
+
+    public void loadAll(Map<String, Set<UUID>> snapshot) {
+        for (Map.Entry<String, Set<UUID>> entry : snapshot.entrySet()) {
+            membersByChat.computeIfAbsent(entry.getKey(), k -> ConcurrentHashMap.newKeySet()).addAll(entry.getValue());
+        }
+        loaded = true;
+    }
+
+    public void clear() {
+        membersByChat.clear();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+}
@@ -0,0 +1,170 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary snapshot of file storage chat data (memberships, permissions, invitations, bans).
+ * Layout: magic, version, a string table holding every chat name and permission level once,
+ * then each section with UUIDs as two longs and strings as indexes into the table.
+ */
+public final class ChatDataBinaryFormat {
+
+    private static final int MAGIC = 0x43434442; // "CCDB"
+    private static final short VERSION = 1;
+
+    private ChatDataBinaryFormat() {
+    }
+
+    public static byte[] encode(Map<UUID, Set<String>> memberships, Map<String, Map<UUID, String>> permissions,
+                                Map<UUID, Set<String>> invitations, Set<UUID> bans) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+
+        writeUuidToNames(out, memberships, strings);
+
+        List<Map.Entry<String, Map<UUID, String>>> chats = new ArrayList<>(permissions.entrySet());
+        out.writeInt(chats.size());
+        for (Map.Entry<String, Map<UUID, String>> chat : chats) {
+            List<Map.Entry<UUID, String>> entries = new ArrayList<>(chat.getValue().entrySet());
+            out.writeInt(strings.id(chat.getKey()));
+            out.writeInt(entries.size());
+            for (Map.Entry<UUID, String> entry : entries) {
+                writeUuid(out, entry.getKey());
+                out.writeInt(strings.id(entry.getValue()));
+            }
+        }
+
+        writeUuidToNames(out, invitations, strings);
+
+        List<UUID> banned = new ArrayList<>(bans);
+        out.writeInt(banned.size());
+        for (UUID uuid : banned) {
+            writeUuid(out, uuid);
+        }
+        out.flush();
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() + 1024);
+        DataOutputStream header = new DataOutputStream(file);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeInt(strings.values.size());
+        for (String value : strings.values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            header.writeShort(bytes.length);
+            header.write(bytes);
+        }
+        header.flush();
+        body.writeTo(file);
+        return file.toByteArray();
+    }
+
+    public static void decode(File file, Map<UUID, Set<String>> memberships, Map<String, Map<UUID, String>> permissions,
+                              Map<UUID, Set<String>> invitations, Set<UUID> bans) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Read into the heap rather than mapping it: a mapped file stays locked on Windows
+            // and could not be replaced by the next save
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a chat data file");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported chat data version " + version + " in " + file.getName());
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8).intern();
+            }
+
+            readUuidToNames(buffer, strings, memberships);
+
+            int chatCount = buffer.getInt();
+            for (int i = 0; i < chatCount; i++) {
+                String chatName = strings[buffer.getInt()];
+                int entries = buffer.getInt();
+                Map<UUID, String> chatPerms = permissions.computeIfAbsent(chatName, k -> new ConcurrentHashMap<>());
+                for (int j = 0; j < entries; j++) {
+                    UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                    chatPerms.put(uuid, strings[buffer.getInt()]);
+                }
+            }
+
+            readUuidToNames(buffer, strings, invitations);
+
+            int banCount = buffer.getInt();
+            for (int i = 0; i < banCount; i++) {
+                bans.add(new UUID(buffer.getLong(), buffer.getLong()));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt chat data file " + file.getName() + ": " + e, e);
+        }
+    }
+
+    private static void writeUuidToNames(DataOutputStream out, Map<UUID, Set<String>> map, StringTable strings) throws IOException {
+        List<Map.Entry<UUID, Set<String>>> entries = new ArrayList<>(map.entrySet());
+        out.writeInt(entries.size());
+        for (Map.Entry<UUID, Set<String>> entry : entries) {
+            List<String> names = new ArrayList<>(entry.getValue());
+            writeUuid(out, entry.getKey());
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeInt(strings.id(name));
+            }
+        }
+    }
+
+    private static void readUuidToNames(ByteBuffer buffer, String[] strings, Map<UUID, Set<String>> target) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+            int names = buffer.getInt();
+            Set<String> set = ConcurrentHashMap.newKeySet(Math.max(names, 1));
+            for (int j = 0; j < names; j++) {
+                set.add(strings[buffer.getInt()]);
+            }
+            target.put(uuid, set);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int id(String value) {
+            return ids.computeIfAbsent(value, k -> {
+                values.add(k);
+                return values.size() - 1;
+            });
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * Append-only log of file storage changes (memberships, permissions, bans, blocks, invites).
+ * Each change is one tab separated line, so recording it costs a single append instead of a full YAML rewrite.
+ * On compaction the journal is rotated, the snapshot files are written, and the rotated part is deleted.
+ * Startup loads the snapshots and replays whatever journal is left on top of them.
+ * A line only counts once its newline is written, a crash mid-line leaves a tail that is cut off before reuse.
+ */
+public class ChatDataJournal {
+
+    public static final String MEMBER_ADD = "M+";
+    public static final String MEMBER_REMOVE = "M-";
+    public static final String PERMISSION_SET = "P=";
+    public static final String PERMISSION_REMOVE = "P-";
+    public static final String BAN_ADD = "B+";
+    public static final String BAN_REMOVE = "B-";
+    public static final String BLOCK_ADD = "K+";
+    public static final String BLOCK_REMOVE = "K-";
+    public static final String BLOCK_CLEAR = "K*";
+    public static final String INVITE_ADD = "I+";
+    public static final String INVITE_REMOVE = "I-";
+    public static final String INVITE_CLEAR = "I*";
+
+    private final File file;
+    private final File rotatedFile;
+    private FileOutputStream stream;
+    private BufferedWriter writer;
+    private int records = 0;
+
+    public ChatDataJournal(File file) throws IOException {
+        this.file = file;
+        this.rotatedFile = new File(file.getParentFile(), file.getName() + ".old");
+        open();
+    }
+
+    public synchronized void append(String... fields) throws IOException {
+        writer.write(String.join("\t", fields));
+        writer.newLine();
+        // Hand the line to the OS right away so it survives the server process dying
+        writer.flush();
+        records++;
+    }
+
+    public synchronized int size() {
+        return records;
+    }
+
+    public synchronized boolean needsCompaction() {
+        return records > 0 || rotatedFile.exists();
+    }
+
+    public synchronized void sync() throws IOException {
+        writer.flush();
+        stream.getFD().sync();
+    }
+
+    /**
+     * Starts a new, empty journal. Everything written so far moves to the rotated file
+     * until discardRotated is called once the snapshot containing it is on disk.
+     */
+    public synchronized void rotate() throws IOException {
+        writer.close();
+
+        if (rotatedFile.exists()) {
+            // An earlier compaction did not finish, so keep its records and add ours after them
+            trimPartialLine(rotatedFile);
+            Files.write(rotatedFile.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+            Files.delete(file.toPath());
+        } else if (!file.renameTo(rotatedFile)) {
+            open();
+            throw new IOException("Could not rotate " + file.getName());
+        }
+
+        open();
+        records = 0;
+    }
+
+    public synchronized void discardRotated() {
+        rotatedFile.delete();
+    }
+
+    /**
+     * Feeds every record (rotated part first) to the handler and returns how many were read.
+     */
+    public synchronized int replay(Consumer<String[]> handler) throws IOException {
+        int count = replayFile(rotatedFile, handler);
+        count += replayFile(file, handler);
+        records = count;
+        return count;
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private int replayFile(File source, Consumer<String[]> handler) throws IOException {
+        if (!source.exists()) {
+            return 0;
+        }
+        trimPartialLine(source);
+
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                String[] record = line.split("\t", -1);
+                if (record.length != fieldCount(record[0])) {
+                    logToConsole("Skipping broken chat data journal record: " + line.replace('\t', ' '));
+                    continue;
+                }
+                handler.accept(record);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Fields in a record of the given type, including the type itself, or -1 if the type is unknown
+    private static int fieldCount(String type) {
+        switch (type) {
+            case BAN_ADD:
+            case BAN_REMOVE:
+            case BLOCK_CLEAR:
+            case INVITE_CLEAR:
+                return 2;
+            case MEMBER_ADD:
+            case MEMBER_REMOVE:
+            case PERMISSION_REMOVE:
+            case BLOCK_ADD:
+            case BLOCK_REMOVE:
+            case INVITE_ADD:
+            case INVITE_REMOVE:
+                return 3;
+            case PERMISSION_SET:
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Cuts the file back to just after its last newline. Whatever follows was being written when the server died,
+     * so it is not a whole record, and appending to it would glue the next record onto it.
+     */
+    private static void trimPartialLine(File source) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(source, "rw")) {
+            long length = raf.length();
+            long end = length;
+            byte[] buffer = new byte[4096];
+            while (end > 0) {
+                int chunk = (int) Math.min(buffer.length, end);
+                raf.seek(end - chunk);
+                raf.readFully(buffer, 0, chunk);
+                int newline = chunk - 1;
+                while (newline >= 0 && buffer[newline] != '\n') {
+                    newline--;
+                }
+                if (newline >= 0) {
+                    end = end - chunk + newline + 1;
+                    break;
+                }
+                end -= chunk;
+            }
+
+            if (end < length) {
+                raf.setLength(end);
+                logToConsole("Dropped " + (length - end) + " bytes of an unfinished record at the end of " + source.getName());
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        if (file.exists()) {
+            trimPartialLine(file);
+        }
+        stream = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+    }
+}
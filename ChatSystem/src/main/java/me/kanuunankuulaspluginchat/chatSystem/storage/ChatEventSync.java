@@ -0,0 +1,202 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibilityManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * Keeps the caches of servers sharing one database in step, without a message broker.
+ * Every change is also written to the chat_events table, and each server reads the rows added since
+ * the last id it saw, skipping its own. Old rows are deleted in small batches.
+ * Ids are handed out at insert but rows show up at commit, so an id can appear after a higher one was read.
+ * Ids skipped over are kept as gaps and looked for again on every poll for a few minutes.
+ */
+public class ChatEventSync {
+
+    public static final String PLAYER_CHANGED = "player";
+    public static final String MEMBER_ADD = "member_add";
+    public static final String MEMBER_REMOVE = "member_remove";
+
+    private static final int POLL_BATCH = 500;
+    private static final int CLEANUP_BATCH = 1000;
+    // Far longer than any chat transaction stays open; ids still missing by then were rolled back or never used
+    private static final long GAP_RETRY_MS = 5 * 60_000L;
+    private static final int MAX_GAPS = 1000;
+
+    public interface Handler {
+        void onRemoteChange(String type, UUID playerUuid, String chatName);
+    }
+
+    private final DataSource dataSource;
+    private final String serverName;
+    private final Handler handler;
+    // Not server-name: that is often left at the default, and two servers with the same name must still hear each other
+    private final String origin = UUID.randomUUID().toString();
+    private final long keepMillis;
+
+    private volatile long lastEventId;
+    // Id below lastEventId not read yet -> when it was first missed, oldest first. Only touched by poll
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private UniversalCompatibilityManager.TaskWrapper pollTask;
+    private int pollsSinceCleanup = 0;
+
+    public ChatEventSync(DataSource dataSource, String serverName, long keepMillis, Handler handler) {
+        this.dataSource = dataSource;
+        this.serverName = serverName;
+        this.keepMillis = keepMillis;
+        this.handler = handler;
+    }
+
+    public void createTable() throws SQLException {
+        String createEventsSQL = """
+            CREATE TABLE IF NOT EXISTS chat_events (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                origin VARCHAR(36) NOT NULL,
+                server_name VARCHAR(50),
+                event_type VARCHAR(20) NOT NULL,
+                player_uuid VARCHAR(36),
+                chat_name VARCHAR(100),
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                INDEX idx_chat_events_created_at (created_at)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(createEventsSQL)) {
+            stmt.executeUpdate();
+            logToConsole("Chat events table created/verified successfully.");
+        }
+    }
+
+    /**
+     * Starts reading from the newest event, since everything older is already in the database this server loads from.
+     */
+    public void start(UniversalCompatibilityManager compatibilityManager, long intervalTicks) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM chat_events");
+             ResultSet rs = stmt.executeQuery()) {
+            lastEventId = rs.next() ? rs.getLong(1) : 0;
+        }
+
+        pollTask = compatibilityManager.runTaskTimerAsync(this::poll, intervalTicks, intervalTicks);
+    }
+
+    public void stop() {
+        if (pollTask != null) {
+            pollTask.cancel();
+            pollTask = null;
+        }
+    }
+
+    public void publish(String type, UUID playerUuid, String chatName) {
+        String insertSQL = "INSERT INTO chat_events (origin, server_name, event_type, player_uuid, chat_name) VALUES (?, ?, ?, ?, ?)";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, origin);
+            stmt.setString(2, serverName);
+            stmt.setString(3, type);
+            stmt.setString(4, playerUuid != null ? playerUuid.toString() : null);
+            stmt.setString(5, chatName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error publishing chat event: " + e.getMessage());
+        }
+    }
+
+    private synchronized void poll() {
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf(missedAt -> now - missedAt > GAP_RETRY_MS);
+
+        try (Connection connection = dataSource.getConnection()) {
+            if (!gaps.isEmpty()) {
+                readGaps(connection);
+            }
+            readNewEvents(connection, now);
+        } catch (SQLException e) {
+            logToConsole("Error reading chat events: " + e.getMessage());
+            return;
+        }
+
+        // Roughly once a minute at the default interval
+        if (++pollsSinceCleanup >= 60) {
+            pollsSinceCleanup = 0;
+            deleteOldEvents();
+        }
+    }
+
+    private void readNewEvents(Connection connection, long now) throws SQLException {
+        String selectSQL = "SELECT id, origin, event_type, player_uuid, chat_name FROM chat_events WHERE id > ? ORDER BY id LIMIT " + POLL_BATCH;
+        try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setLong(1, lastEventId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong("id");
+                    for (long missing = lastEventId + 1; missing < id && gaps.size() < MAX_GAPS; missing++) {
+                        gaps.put(missing, now);
+                    }
+                    lastEventId = id;
+                    apply(rs);
+                }
+            }
+        }
+    }
+
+    private void readGaps(Connection connection) throws SQLException {
+        List<Long> ids = new ArrayList<>(gaps.keySet());
+        StringBuilder selectSQL = new StringBuilder("SELECT id, origin, event_type, player_uuid, chat_name FROM chat_events WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            selectSQL.append(i == 0 ? "?" : ", ?");
+        }
+        selectSQL.append(") ORDER BY id");
+
+        try (PreparedStatement stmt = connection.prepareStatement(selectSQL.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setLong(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    gaps.remove(rs.getLong("id"));
+                    apply(rs);
+                }
+            }
+        }
+    }
+
+    private void apply(ResultSet rs) throws SQLException {
+        if (origin.equals(rs.getString("origin"))) {
+            return;
+        }
+
+        String uuidString = rs.getString("player_uuid");
+        try {
+            handler.onRemoteChange(rs.getString("event_type"),
+                    uuidString != null ? UUID.fromString(uuidString) : null,
+                    rs.getString("chat_name"));
+        } catch (RuntimeException e) {
+            logToConsole("Error applying chat event " + rs.getLong("id") + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteOldEvents() {
+        String deleteSQL = "DELETE FROM chat_events WHERE created_at < ? LIMIT " + CLEANUP_BATCH;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - keepMillis));
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error deleting old chat events: " + e.getMessage());
+        }
+    }
+}
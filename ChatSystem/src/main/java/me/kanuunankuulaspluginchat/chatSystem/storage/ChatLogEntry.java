@@ -0,0 +1,24 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+public class ChatLogEntry {
+    public final String chatName;
+    public final String sender;
+    public final String message;
+    public final String serverName;
+    public final long timestamp;
+    // The same message as kept in recent history, told its row id once stored. Null if it is not kept
+    public final StorageManager.ChatMessage recent;
+
+    public ChatLogEntry(String chatName, String sender, String message, String serverName, long timestamp) {
+        this(chatName, sender, message, serverName, timestamp, null);
+    }
+
+    public ChatLogEntry(String chatName, String sender, String message, String serverName, long timestamp, StorageManager.ChatMessage recent) {
+        this.chatName = chatName;
+        this.sender = sender;
+        this.message = message;
+        this.serverName = serverName;
+        this.timestamp = timestamp;
+        this.recent = recent;
+    }
+}
@@ -0,0 +1,258 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibilityManager;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import javax.sql.DataSource;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * Deletes chat_logs rows older than a number of days, or beyond a number of rows per chat, so the table stays small.
+ * Rows are removed a chunk at a time by primary key with a short pause in between, so no statement holds locks for
+ * long and chat logging keeps going while it runs. Removed rows can first be written to gzipped files in logs/archive.
+ * On a database shared by several servers only the server holding a named database lock prunes, the others skip the run.
+ */
+public class ChatLogRetention {
+
+    private static final long PAUSE_BETWEEN_CHUNKS_MS = 100;
+    private static final String LOCK_NAME = "LEFT(CONCAT('chatcontrol_log_retention.', DATABASE()), 64)";
+
+    private final DataSource dataSource;
+    private final File archiveDirectory;
+    private final int keepDays;
+    private final int maxRowsPerChat;
+    private final int chunkSize;
+    private final boolean archive;
+    private final boolean shared;
+
+    private final SimpleDateFormat fileNameFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+    private final SimpleDateFormat lineFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    private UniversalCompatibilityManager.TaskWrapper pruneTask;
+    private volatile boolean stopped = false;
+    private BufferedWriter archiveWriter;
+
+    public ChatLogRetention(DataSource dataSource, File archiveDirectory, int keepDays, int maxRowsPerChat, int chunkSize, boolean archive, boolean shared) {
+        this.dataSource = dataSource;
+        this.archiveDirectory = archiveDirectory;
+        this.keepDays = keepDays;
+        this.maxRowsPerChat = maxRowsPerChat;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.archive = archive;
+        this.shared = shared;
+    }
+
+    public boolean isEnabled() {
+        return keepDays > 0 || maxRowsPerChat > 0;
+    }
+
+    public void start(UniversalCompatibilityManager compatibilityManager, long intervalTicks) {
+        // First run a minute after startup, away from the rest of the startup work
+        pruneTask = compatibilityManager.runTaskTimerAsync(this::prune, 1200L, intervalTicks);
+    }
+
+    public void stop() {
+        stopped = true;
+        if (pruneTask != null) {
+            pruneTask.cancel();
+            pruneTask = null;
+        }
+    }
+
+    private synchronized void prune() {
+        if (!shared) {
+            pruneAll();
+            return;
+        }
+
+        // MySQL named locks belong to the connection, so it is held for the whole run and the lock released on it
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!acquireLock(lockConnection)) {
+                return;
+            }
+            try {
+                pruneAll();
+            } finally {
+                releaseLock(lockConnection);
+            }
+        } catch (SQLException e) {
+            logToConsole("Error taking the chat log pruning lock: " + e.getMessage());
+        }
+    }
+
+    private boolean acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT GET_LOCK(" + LOCK_NAME + ", 0)");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    private void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT RELEASE_LOCK(" + LOCK_NAME + ")")) {
+            stmt.executeQuery().close();
+        }
+    }
+
+    private void pruneAll() {
+        long removed = 0;
+        try {
+            if (keepDays > 0) {
+                Timestamp cutoff = new Timestamp(System.currentTimeMillis() - keepDays * 86_400_000L);
+                removed += pruneOlderThan(null, cutoff);
+            }
+
+            if (maxRowsPerChat > 0) {
+                for (String chatName : getChatNames()) {
+                    Timestamp cutoff = getRowLimitCutoff(chatName);
+                    if (cutoff != null) {
+                        removed += pruneOlderThan(chatName, cutoff);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error pruning chat logs: " + e.getMessage());
+        } catch (IOException e) {
+            logToConsole("Error archiving chat logs, pruning stopped so nothing is lost: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeArchive();
+        }
+
+        if (removed > 0) {
+            logToConsole("Pruned " + removed + " old chat log rows" + (archive ? " (archived to " + archiveDirectory.getName() + ")." : "."));
+        }
+    }
+
+    private List<String> getChatNames() throws SQLException {
+        List<String> chatNames = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT DISTINCT chat_name FROM chat_logs");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                chatNames.add(rs.getString("chat_name"));
+            }
+        }
+        return chatNames;
+    }
+
+    // Timestamp of the newest row past the limit, or null if the chat is within it
+    private Timestamp getRowLimitCutoff(String chatName) throws SQLException {
+        String selectSQL = "SELECT timestamp FROM chat_logs WHERE chat_name = ? ORDER BY timestamp DESC LIMIT 1 OFFSET ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, chatName);
+            stmt.setInt(2, maxRowsPerChat);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getTimestamp("timestamp") : null;
+            }
+        }
+    }
+
+    /**
+     * Removes rows before the cutoff (of one chat, or of all when chatName is null) chunk by chunk.
+     * With archiving on, a chunk is only deleted once it has been written to the archive.
+     */
+    private long pruneOlderThan(String chatName, Timestamp cutoff) throws SQLException, IOException, InterruptedException {
+        String selectSQL = "SELECT id, chat_name, sender, message, timestamp, server_name FROM chat_logs WHERE timestamp < ?"
+                + (chatName != null ? " AND chat_name = ?" : "") + " ORDER BY timestamp LIMIT " + chunkSize;
+
+        long removed = 0;
+        while (!stopped) {
+            List<Long> ids = new ArrayList<>();
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+                stmt.setTimestamp(1, cutoff);
+                if (chatName != null) {
+                    stmt.setString(2, chatName);
+                }
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong("id"));
+                        if (archive) {
+                            writeArchiveLine(rs);
+                        }
+                    }
+                }
+
+                if (ids.isEmpty()) {
+                    break;
+                }
+                if (archive) {
+                    archiveWriter.flush();
+                }
+
+                deleteRows(connection, ids);
+            }
+
+            removed += ids.size();
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            Thread.sleep(PAUSE_BETWEEN_CHUNKS_MS);
+        }
+        return removed;
+    }
+
+    private void deleteRows(Connection connection, List<Long> ids) throws SQLException {
+        StringBuilder deleteSQL = new StringBuilder("DELETE FROM chat_logs WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            deleteSQL.append(i == 0 ? "?" : ", ?");
+        }
+        deleteSQL.append(")");
+
+        try (PreparedStatement stmt = connection.prepareStatement(deleteSQL.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setLong(i + 1, ids.get(i));
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private void writeArchiveLine(ResultSet rs) throws SQLException, IOException {
+        if (archiveWriter == null) {
+            if (!archiveDirectory.exists() && !archiveDirectory.mkdirs()) {
+                throw new IOException("Could not create archive directory " + archiveDirectory.getPath());
+            }
+            // Sync flush, so each chunk is really in the file before its rows are deleted
+            File file = new File(archiveDirectory, "chat_logs-" + fileNameFormat.format(new Date()) + ".log.gz");
+            archiveWriter = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), true), StandardCharsets.UTF_8));
+        }
+
+        Timestamp timestamp = rs.getTimestamp("timestamp");
+        String serverName = rs.getString("server_name");
+        archiveWriter.write("[" + (timestamp != null ? lineFormat.format(timestamp) : "?") + "] "
+                + (serverName != null ? "[" + serverName + "] " : "")
+                + "[" + rs.getString("chat_name") + "] " + rs.getString("sender") + ": " + rs.getString("message"));
+        archiveWriter.newLine();
+    }
+
+    private void closeArchive() {
+        if (archiveWriter == null) {
+            return;
+        }
+        try {
+            archiveWriter.close();
+        } catch (IOException e) {
+            logToConsole("Failed to close chat log archive: " + e.getMessage());
+        }
+        archiveWriter = null;
+    }
+}
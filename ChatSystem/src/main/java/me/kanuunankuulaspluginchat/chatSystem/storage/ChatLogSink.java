@@ -0,0 +1,14 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.util.List;
+
+/**
+ * Destination for chat log lines. ChatLogWriter calls write from its own thread with one batch at a time.
+ */
+public interface ChatLogSink {
+
+    void write(List<ChatLogEntry> batch) throws Exception;
+
+    default void close() {
+    }
+}
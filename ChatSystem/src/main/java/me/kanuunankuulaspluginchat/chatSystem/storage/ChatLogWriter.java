@@ -0,0 +1,150 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Queues chat log lines and writes them to a ChatLogSink from one dedicated thread.
+ * A batch is flushed when it reaches batchSize lines or flushIntervalMillis after its first line.
+ * When the queue is full new lines are dropped (and counted) instead of blocking the chat thread.
+ */
+public class ChatLogWriter {
+
+    private final ChatLogSink sink;
+    private final Logger logger;
+    private final BlockingQueue<ChatLogEntry> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushMillis = new LongAdder();
+    private final AtomicLong lastFlushMillis = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    public ChatLogWriter(ChatLogSink sink, Logger logger, int queueCapacity, int batchSize, long flushIntervalMillis) {
+        this.sink = sink;
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalMillis = Math.max(flushIntervalMillis, 1);
+
+        this.thread = new Thread(this::run, "ChatControl-ChatLogWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public void submit(ChatLogEntry entry) {
+        if (!running || !queue.offer(entry)) {
+            dropped.increment();
+            if (entry.recent != null) {
+                entry.recent.setId(-1);
+            }
+        }
+    }
+
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+    public String describeStats() {
+        long flushCount = flushes.sum();
+        long avgFlush = flushCount > 0 ? flushMillis.sum() / flushCount : 0;
+        long avgBatch = flushCount > 0 ? written.sum() / flushCount : 0;
+
+        return written.sum() + " written in " + flushCount + " flushes (avg " + avgBatch + " rows, " + avgFlush + " ms, " +
+                "last " + lastFlushMillis.get() + " ms, largest " + largestBatch.get() + " rows), " +
+                queue.size() + " queued, " + failed.sum() + " failed, " + dropped.sum() + " dropped";
+    }
+
+    private void run() {
+        List<ChatLogEntry> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                ChatLogEntry first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            flush(batch);
+        }
+
+        // Shutting down: write whatever is still queued
+        do {
+            queue.drainTo(batch, batchSize - batch.size());
+            flush(batch);
+        } while (!queue.isEmpty());
+    }
+
+    private void fillBatch(List<ChatLogEntry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                return;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+
+            ChatLogEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<ChatLogEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            sink.write(batch);
+            written.add(batch.size());
+        } catch (Exception e) {
+            failed.add(batch.size());
+            logger.warning("Failed to write " + batch.size() + " chat log lines: " + e.getMessage());
+            for (ChatLogEntry entry : batch) {
+                if (entry.recent != null) {
+                    entry.recent.setId(-1);
+                }
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        flushes.increment();
+        flushMillis.add(elapsed);
+        lastFlushMillis.set(elapsed);
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        batch.clear();
+    }
+}
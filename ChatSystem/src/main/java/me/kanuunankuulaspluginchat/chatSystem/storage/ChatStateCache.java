@@ -0,0 +1,254 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Read-through / write-through cache of ban, per-chat permission, block and invite state for the SQL backends.
+ * A missing entry means "not known yet", which is different from "no ban" or "no permission".
+ * Players whose full state was preloaded at login are complete: anything not cached for them does not exist.
+ */
+public class ChatStateCache {
+
+    private static final String NO_PERMISSION = "";
+
+    private final Map<UUID, Boolean> bans = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<String, String>> permissions = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> blockedChannels = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> invitations = new ConcurrentHashMap<>();
+    private final Map<UUID, PendingLoad> loading = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Block and invite changes made while a player's state is being read, laid over the stored state once it arrives.
+     * A channel maps to true when it was added and false when it was removed.
+     */
+    public static final class PendingLoad {
+        private final Map<String, Boolean> blocks = new HashMap<>();
+        private final Map<String, Boolean> invitations = new HashMap<>();
+        private boolean blocksCleared = false;
+        private boolean invitationsCleared = false;
+    }
+
+    /**
+     * Call before reading a player's state, then hand the result to loadPlayer (or cancelLoad if reading failed).
+     */
+    public PendingLoad beginLoad(UUID playerUuid) {
+        return loading.computeIfAbsent(playerUuid, k -> new PendingLoad());
+    }
+
+    public void cancelLoad(UUID playerUuid, PendingLoad load) {
+        loading.remove(playerUuid, load);
+    }
+
+    /**
+     * Stores a player's full state. Changes made while it was loading are newer, so they are kept.
+     * Dropped if the player was evicted meanwhile or another load of the same player finished first.
+     */
+    public void loadPlayer(UUID playerUuid, PendingLoad load, PlayerChatState state) {
+        synchronized (load) {
+            if (!loading.remove(playerUuid, load)) {
+                return;
+            }
+
+            bans.putIfAbsent(playerUuid, state.banned);
+
+            Map<String, String> chats = permissions.computeIfAbsent(playerUuid, k -> new ConcurrentHashMap<>());
+            for (Map.Entry<String, String> entry : state.permissions.entrySet()) {
+                chats.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+
+            // Sets that are already loaded were kept up to date since, so they win over this read
+            blockedChannels.putIfAbsent(playerUuid, merge(state.blockedChannels, load.blocksCleared, load.blocks));
+            invitations.putIfAbsent(playerUuid, merge(state.invitations, load.invitationsCleared, load.invitations));
+        }
+    }
+
+    private static Set<String> merge(Set<String> stored, boolean cleared, Map<String, Boolean> changes) {
+        Set<String> merged = ConcurrentHashMap.newKeySet();
+        if (!cleared) {
+            merged.addAll(stored);
+        }
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            if (change.getValue()) {
+                merged.add(change.getKey());
+            } else {
+                merged.remove(change.getKey());
+            }
+        }
+        return merged;
+    }
+
+    // Records the change on the load in progress, false if the player is not being loaded or already is
+    private boolean recordPending(UUID playerUuid, Consumer<PendingLoad> change) {
+        PendingLoad load = loading.get(playerUuid);
+        if (load == null || isLoaded(playerUuid)) {
+            return false;
+        }
+        synchronized (load) {
+            if (loading.get(playerUuid) != load) {
+                // Finished in the meantime, so the change goes to the loaded sets
+                return false;
+            }
+            change.accept(load);
+            return true;
+        }
+    }
+
+    public boolean isLoaded(UUID playerUuid) {
+        return blockedChannels.containsKey(playerUuid);
+    }
+
+    public Boolean getBan(UUID playerUuid) {
+        return bans.get(playerUuid);
+    }
+
+    public void putBan(UUID playerUuid, boolean banned) {
+        bans.put(playerUuid, banned);
+    }
+
+    /**
+     * Take before a read-through query and pass to fillBan / fillPermission with its result.
+     */
+    public long readStamp() {
+        return evictions.get();
+    }
+
+    /**
+     * Stores a ban state read from the database. A change cached while the query ran is newer and is kept,
+     * and nothing is stored if the player was evicted since readStamp.
+     */
+    public void fillBan(UUID playerUuid, boolean banned, long stamp) {
+        if (evictions.get() == stamp) {
+            bans.putIfAbsent(playerUuid, banned);
+        }
+    }
+
+    public boolean hasPermissionEntry(UUID playerUuid, String chatName) {
+        if (isLoaded(playerUuid)) {
+            return true;
+        }
+        Map<String, String> chats = permissions.get(playerUuid);
+        return chats != null && chats.containsKey(chatName);
+    }
+
+    public String getPermission(UUID playerUuid, String chatName) {
+        Map<String, String> chats = permissions.get(playerUuid);
+        if (chats == null) {
+            return null;
+        }
+
+        String permission = chats.get(chatName);
+        return NO_PERMISSION.equals(permission) ? null : permission;
+    }
+
+    public void putPermission(UUID playerUuid, String chatName, String permissionLevel) {
+        permissions.computeIfAbsent(playerUuid, k -> new ConcurrentHashMap<>())
+                .put(chatName, permissionLevel != null ? permissionLevel : NO_PERMISSION);
+    }
+
+    /**
+     * Like fillBan, for a permission read from the database.
+     */
+    public void fillPermission(UUID playerUuid, String chatName, String permissionLevel, long stamp) {
+        if (evictions.get() == stamp) {
+            permissions.computeIfAbsent(playerUuid, k -> new ConcurrentHashMap<>())
+                    .putIfAbsent(chatName, permissionLevel != null ? permissionLevel : NO_PERMISSION);
+        }
+    }
+
+    /**
+     * Sets the permission only if the cache still holds expected (null for none), so a later change is not undone.
+     */
+    public void replacePermission(UUID playerUuid, String chatName, String expected, String permissionLevel) {
+        Map<String, String> chats = permissions.get(playerUuid);
+        if (chats != null) {
+            chats.replace(chatName, expected != null ? expected : NO_PERMISSION, permissionLevel != null ? permissionLevel : NO_PERMISSION);
+        }
+    }
+
+    /**
+     * Null if the player's state is not loaded.
+     */
+    public Set<String> getBlockedChannels(UUID playerUuid) {
+        Set<String> blocked = blockedChannels.get(playerUuid);
+        return blocked != null ? new HashSet<>(blocked) : null;
+    }
+
+    public void putBlock(UUID playerUuid, String channelName, boolean blocked) {
+        if (recordPending(playerUuid, load -> load.blocks.put(channelName, blocked))) {
+            return;
+        }
+        blockedChannels.computeIfPresent(playerUuid, (k, channels) -> {
+            if (blocked) {
+                channels.add(channelName);
+            } else {
+                channels.remove(channelName);
+            }
+            return channels;
+        });
+    }
+
+    public void clearBlocks(UUID playerUuid) {
+        if (recordPending(playerUuid, load -> {
+            load.blocks.clear();
+            load.blocksCleared = true;
+        })) {
+            return;
+        }
+        blockedChannels.computeIfPresent(playerUuid, (k, channels) -> {
+            channels.clear();
+            return channels;
+        });
+    }
+
+    /**
+     * Null if the player's state is not loaded.
+     */
+    public Set<String> getInvitations(UUID playerUuid) {
+        Set<String> invited = invitations.get(playerUuid);
+        return invited != null ? new HashSet<>(invited) : null;
+    }
+
+    public void putInvitation(UUID playerUuid, String chatName, boolean invited) {
+        if (recordPending(playerUuid, load -> load.invitations.put(chatName, invited))) {
+            return;
+        }
+        invitations.computeIfPresent(playerUuid, (k, chats) -> {
+            if (invited) {
+                chats.add(chatName);
+            } else {
+                chats.remove(chatName);
+            }
+            return chats;
+        });
+    }
+
+    public void clearInvitations(UUID playerUuid) {
+        if (recordPending(playerUuid, load -> {
+            load.invitations.clear();
+            load.invitationsCleared = true;
+        })) {
+            return;
+        }
+        invitations.computeIfPresent(playerUuid, (k, chats) -> {
+            chats.clear();
+            return chats;
+        });
+    }
+
+    public void evict(UUID playerUuid) {
+        evictions.incrementAndGet();
+        loading.remove(playerUuid);
+        bans.remove(playerUuid);
+        permissions.remove(playerUuid);
+        blockedChannels.remove(playerUuid);
+        invitations.remove(playerUuid);
+    }
+}
@@ -0,0 +1,131 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Where chat data is actually kept (files, MySQL, embedded H2).
+ * Methods block, so StorageManager calls them off the main thread and answers hot reads
+ * from its own caches. Errors are logged by the backend: reads return an empty result,
+ * writes that callers need to know about throw a RuntimeException.
+ */
+public interface ChatStorageBackend {
+
+    String getName();
+
+    /**
+     * True if reads are answered from memory, so StorageManager can call them directly
+     * instead of caching them and moving them off the main thread.
+     */
+    default boolean readsFromMemory() {
+        return false;
+    }
+
+    /**
+     * Every active membership as chat name -> members, used to fill the membership index.
+     */
+    Map<String, Set<UUID>> loadMemberships();
+
+    /**
+     * Where chat log lines should be written, or null to not log chat.
+     */
+    ChatLogSink createChatLogSink();
+
+    void close();
+
+    /**
+     * False if chat logs can not be read back (log files), so chat history only exists in memory.
+     */
+    default boolean storesChatHistory() {
+        return true;
+    }
+
+    /**
+     * True if other servers may write to the same chat logs, so this server's memory does not hold every recent message.
+     */
+    default boolean sharesChatLog() {
+        return false;
+    }
+
+    /**
+     * Ban, permissions, blocks and invites of one player, read together so a login costs one round trip.
+     */
+    PlayerChatState loadPlayerState(UUID playerUuid);
+
+    List<ChatChannel> loadChannels();
+
+    void saveChannel(ChatChannel channel);
+
+    void deleteChannel(String channelName);
+
+    void blockUser(UUID playerUuid, String channelName, UUID blockedBy, String reason);
+
+    void unblockUser(UUID playerUuid, String channelName);
+
+    boolean isUserBlocked(UUID playerUuid, String channelName);
+
+    Set<String> getBlockedChannels(UUID playerUuid);
+
+    void clearBlocks(UUID playerUuid);
+
+    void addMember(UUID playerUuid, String chatName);
+
+    void removeMember(UUID playerUuid, String chatName);
+
+    boolean isMember(UUID playerUuid, String chatName);
+
+    Set<String> getUserChats(UUID playerUuid);
+
+    Set<UUID> getChatMembers(String chatName);
+
+    void setPermission(UUID playerUuid, String chatName, String permissionLevel, UUID grantedBy);
+
+    void removePermission(UUID playerUuid, String chatName);
+
+    /**
+     * Removes the player's permission in the chat only if it is "muted".
+     */
+    void removeMute(UUID playerUuid, String chatName);
+
+    String getPermission(UUID playerUuid, String chatName);
+
+    Map<UUID, String> getPermissions(String chatName);
+
+    void addInvitation(UUID invitedPlayer, String chatName, UUID invitedBy);
+
+    void removeInvitation(UUID playerUuid, String chatName);
+
+    boolean hasInvitation(UUID playerUuid, String chatName);
+
+    Set<String> getInvitations(UUID playerUuid);
+
+    void clearInvitations(UUID playerUuid);
+
+    void banUser(UUID playerUuid, UUID bannedBy, String reason);
+
+    void unbanUser(UUID playerUuid);
+
+    boolean isBanned(UUID playerUuid);
+
+    int getChannelCount(UUID playerUuid);
+
+    void incrementChannelCount(UUID playerUuid);
+
+    void decrementChannelCount(UUID playerUuid);
+
+    void recordChannelCreation(UUID playerUuid, String channelName, String serverName);
+
+    void recordChannelDeletion(UUID playerUuid, String channelName);
+
+    /**
+     * Passes up to limit messages of the chat to the consumer as they are read, newest first, and returns how many.
+     * A null beforeTimestamp starts at the newest message, otherwise only messages before (beforeTimestamp, beforeId) are read.
+     */
+    int streamChatHistory(String chatName, Timestamp beforeTimestamp, long beforeId, int limit, Consumer<StorageManager.ChatMessage> consumer);
+}
@@ -0,0 +1,934 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import me.kanuunankuulaspluginchat.chatSystem.ChatControlPlugin;
+import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibilityManager;
+import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * File storage: everything is held in memory and persisted to channel_data.yml and chats.yml (or chats.dat),
+ * with membership, permission, ban, block and invite changes appended to chats.journal in between.
+ */
+public class FileChatStorageBackend implements ChatStorageBackend {
+
+    private final ChatControlPlugin plugin;
+    private final UniversalCompatibilityManager compatibilityManager;
+
+    private File channelDataFile;
+    private FileConfiguration channelDataConfig;
+    private final Map<UUID, Integer> channelCountCache = new ConcurrentHashMap<>();
+
+    private File chatDataFile;
+    private File chatBinaryFile;
+    private boolean binaryChatData;
+    private FileConfiguration chatDataConfig;
+    // False when a data file could not be read or moved aside, so it is never written over
+    private volatile boolean chatDataWritable = true;
+    private final Map<UUID, Set<String>> userChatMemberships = new ConcurrentHashMap<>();
+    private final Map<String, Map<UUID, String>> chatPermissions = new ConcurrentHashMap<>();
+    private final Set<UUID> bannedUsers = ConcurrentHashMap.newKeySet();
+    private final Map<String, ChatChannel> channelCache = new ConcurrentHashMap<>();
+    private final Map<String, Set<UUID>> channelBlocks = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> chatInvitations = new ConcurrentHashMap<>();
+    private final AtomicBoolean chatDataDirty = new AtomicBoolean(false);
+    private final AtomicBoolean channelDataDirty = new AtomicBoolean(false);
+    private volatile ChatDataJournal journal;
+    // Held across each change and its journal record, so the journal has changes in the order memory got them
+    private final Object journalLock = new Object();
+    private int journalCompactThreshold;
+
+    public FileChatStorageBackend(ChatControlPlugin plugin, UniversalCompatibilityManager compatibilityManager) {
+        this.plugin = plugin;
+        this.compatibilityManager = compatibilityManager;
+    }
+
+    public void load() {
+        channelDataFile = new File(plugin.getDataFolder(), "channel_data.yml");
+        if (!channelDataFile.exists()) {
+            try {
+                channelDataFile.createNewFile();
+            } catch (IOException e) {
+                logToConsole("Failed to create channel data file: " + e.getMessage());
+            }
+        }
+        channelDataConfig = YamlConfiguration.loadConfiguration(channelDataFile);
+
+        // Only parsed if it turns out to be the file chat data is loaded from
+        chatDataFile = new File(plugin.getDataFolder(), "chats.yml");
+        chatDataConfig = new YamlConfiguration();
+
+        binaryChatData = plugin.getConfig().getString("storage.file.format", "yaml").equalsIgnoreCase("binary");
+        chatBinaryFile = new File(plugin.getDataFolder(), "chats.dat");
+
+        loadChannelDataFromFile();
+        loadChannelBlocksFromFile();
+        loadChatData();
+        loadChannelsFromFile();
+        openJournal();
+        startFileFlushTask();
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public boolean readsFromMemory() {
+        return true;
+    }
+
+    @Override
+    public boolean storesChatHistory() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Set<UUID>> loadMemberships() {
+        Map<String, Set<UUID>> snapshot = new HashMap<>();
+        for (Map.Entry<UUID, Set<String>> entry : userChatMemberships.entrySet()) {
+            for (String chatName : entry.getValue()) {
+                snapshot.computeIfAbsent(chatName, k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public ChatLogSink createChatLogSink() {
+        FileConfiguration config = plugin.getConfig();
+        if (!config.getBoolean("logging.file-logging", true)) {
+            return null;
+        }
+
+        return new RollingFileChatLogSink(
+                new File(plugin.getDataFolder(), "logs"),
+                plugin.getLogger(),
+                config.getString("logging.file-split", "day").equalsIgnoreCase("channel"),
+                config.getBoolean("logging.include-timestamps", true),
+                config.getLong("logging.max-file-size-mb", 10) * 1024L * 1024L,
+                config.getBoolean("logging.compress-rotated", true));
+    }
+
+    @Override
+    public void close() {
+        if (journal != null && journal.needsCompaction()) {
+            compactJournal();
+        }
+        flushDirtyFiles();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Loads whichever of chats.dat and chats.yml was written last, so switching storage.file.format never brings back
+     * an older copy. Only that file is read. If it is not in the configured format it is converted on the next flush.
+     */
+    private void loadChatData() {
+        long start = System.currentTimeMillis();
+
+        boolean binaryIsNewer = chatBinaryFile.exists() && (!chatDataFile.exists()
+                || chatBinaryFile.lastModified() > chatDataFile.lastModified()
+                || (binaryChatData && chatBinaryFile.lastModified() == chatDataFile.lastModified()));
+        if (binaryIsNewer) {
+            try {
+                ChatDataBinaryFormat.decode(chatBinaryFile, userChatMemberships, chatPermissions, chatInvitations, bannedUsers);
+                logToConsole("Loaded chat data from " + chatBinaryFile.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
+                if (!binaryChatData) {
+                    markChatDataDirty();
+                }
+                return;
+            } catch (IOException e) {
+                clearChatData();
+                moveAsideCorrupt(chatBinaryFile, e);
+            }
+        }
+
+        if (chatDataFile.exists()) {
+            try {
+                chatDataConfig.load(chatDataFile);
+            } catch (IOException | InvalidConfigurationException e) {
+                logToConsole("Failed to read " + chatDataFile.getName() + ", starting without chat data: " + e.getMessage());
+                moveAsideCorrupt(chatDataFile, e);
+                return;
+            }
+            loadChatDataFromFile();
+            loadChatInvitationsFromFile();
+            logToConsole("Loaded chat data from " + chatDataFile.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        if (binaryChatData) {
+            // No usable binary snapshot, write one from what was just loaded
+            markChatDataDirty();
+        }
+    }
+
+    // Keeps an unreadable data file for recovery by hand before anything writes a new one under its name
+    private void moveAsideCorrupt(File dataFile, Exception cause) {
+        File corrupt = new File(dataFile.getParentFile(), dataFile.getName() + ".corrupt");
+        for (int i = 1; corrupt.exists(); i++) {
+            corrupt = new File(dataFile.getParentFile(), dataFile.getName() + ".corrupt" + i);
+        }
+
+        try {
+            Files.move(dataFile.toPath(), corrupt.toPath());
+            logToConsole("Failed to load " + dataFile.getName() + ", moved it to " + corrupt.getName() + ": " + cause.getMessage());
+        } catch (IOException e) {
+            logToConsole("Failed to load " + dataFile.getName() + " and could not move it aside, saving chat data is off: " + cause.getMessage());
+            chatDataWritable = false;
+        }
+    }
+
+    private void clearChatData() {
+        userChatMemberships.clear();
+        chatPermissions.clear();
+        chatInvitations.clear();
+        bannedUsers.clear();
+    }
+
+    private void loadChatDataFromFile() {
+        if (chatDataConfig.getConfigurationSection("memberships") != null) {
+            for (String uuidString : chatDataConfig.getConfigurationSection("memberships").getKeys(false)) {
+                try {
+                    UUID uuid = UUID.fromString(uuidString);
+                    Set<String> chats = ConcurrentHashMap.newKeySet();
+                    chats.addAll(chatDataConfig.getStringList("memberships." + uuidString));
+                    userChatMemberships.put(uuid, chats);
+                } catch (IllegalArgumentException e) {
+                    logToConsole("Invalid UUID in chat memberships: " + uuidString);
+                }
+            }
+        }
+
+        if (chatDataConfig.getConfigurationSection("permissions") != null) {
+            for (String chatName : chatDataConfig.getConfigurationSection("permissions").getKeys(false)) {
+                Map<UUID, String> chatPerms = new ConcurrentHashMap<>();
+                if (chatDataConfig.getConfigurationSection("permissions." + chatName) != null) {
+                    for (String uuidString : chatDataConfig.getConfigurationSection("permissions." + chatName).getKeys(false)) {
+                        try {
+                            UUID uuid = UUID.fromString(uuidString);
+                            String permission = chatDataConfig.getString("permissions." + chatName + "." + uuidString);
+                            if (permission != null) {
+                                chatPerms.put(uuid, permission);
+                            }
+                        } catch (IllegalArgumentException e) {
+                            logToConsole("Invalid UUID in chat permissions: " + uuidString);
+                        }
+                    }
+                }
+                chatPermissions.put(chatName, chatPerms);
+            }
+        }
+
+        if (chatDataConfig.isList("banned_users")) {
+            List<String> bannedList = chatDataConfig.getStringList("banned_users");
+            for (String uuidString : bannedList) {
+                try {
+                    bannedUsers.add(UUID.fromString(uuidString));
+                } catch (IllegalArgumentException e) {
+                    logToConsole("Invalid UUID in banned users: " + uuidString);
+                }
+            }
+        }
+    }
+
+    private void loadChannelsFromFile() {
+        if (channelDataConfig.getConfigurationSection("custom_channels") != null) {
+            for (String channelName : channelDataConfig.getConfigurationSection("custom_channels").getKeys(false)) {
+                try {
+                    String prefix = channelDataConfig.getString("custom_channels." + channelName + ".prefix");
+                    boolean isPrivate = channelDataConfig.getBoolean("custom_channels." + channelName + ".is_private", false);
+                    String ownerString = channelDataConfig.getString("custom_channels." + channelName + ".owner");
+                    String description = channelDataConfig.getString("custom_channels." + channelName + ".description");
+                    String requiredPermission = channelDataConfig.getString("custom_channels." + channelName + ".required_permission");
+
+                    if (ownerString != null) {
+                        UUID owner = UUID.fromString(ownerString);
+                        ChatChannel channel = new ChatChannel(channelName, prefix, isPrivate, owner, description, requiredPermission);
+                        channelCache.put(channelName, channel);
+                    }
+                } catch (IllegalArgumentException e) {
+                    logToConsole("Invalid data for channel: " + channelName + " - " + e.getMessage());
+                }
+            }
+        }
+    }
+
+
+    private void loadChannelDataFromFile() {
+        if (channelDataConfig.getConfigurationSection("players") != null) {
+            for (String uuidString : channelDataConfig.getConfigurationSection("players").getKeys(false)) {
+                try {
+                    UUID uuid = UUID.fromString(uuidString);
+                    int count = channelDataConfig.getInt("players." + uuidString + ".channel_count", 0);
+                    channelCountCache.put(uuid, count);
+                } catch (IllegalArgumentException e) {
+                    logToConsole("Invalid UUID in channel data file: " + uuidString);
+                }
+            }
+        }
+    }
+
+    private void loadChannelBlocksFromFile() {
+        if (channelDataConfig.getConfigurationSection("channel_blocks") != null) {
+            for (String channelName : channelDataConfig.getConfigurationSection("channel_blocks").getKeys(false)) {
+                List<String> blockedList = channelDataConfig.getStringList("channel_blocks." + channelName);
+                Set<UUID> blockedUsers = new HashSet<>();
+                for (String uuidString : blockedList) {
+                    try {
+                        blockedUsers.add(UUID.fromString(uuidString));
+                    } catch (IllegalArgumentException e) {
+                        logToConsole("Invalid UUID in channel blocks: " + uuidString);
+                    }
+                }
+                if (!blockedUsers.isEmpty()) {
+                    Set<UUID> blocked = ConcurrentHashMap.newKeySet();
+                    blocked.addAll(blockedUsers);
+                    channelBlocks.put(channelName, blocked);
+                }
+            }
+        }
+    }
+
+    private void loadChatInvitationsFromFile() {
+        if (chatDataConfig.getConfigurationSection("invitations") != null) {
+            for (String uuidString : chatDataConfig.getConfigurationSection("invitations").getKeys(false)) {
+                try {
+                    UUID uuid = UUID.fromString(uuidString);
+                    Set<String> invites = ConcurrentHashMap.newKeySet();
+                    invites.addAll(chatDataConfig.getStringList("invitations." + uuidString));
+                    chatInvitations.put(uuid, invites);
+                } catch (IllegalArgumentException e) {
+                    logToConsole("Invalid UUID in chat invitations: " + uuidString);
+                }
+            }
+        }
+    }
+
+    @Override
+    public PlayerChatState loadPlayerState(UUID playerUuid) {
+        Map<String, String> permissions = new HashMap<>();
+        for (Map.Entry<String, Map<UUID, String>> entry : chatPermissions.entrySet()) {
+            String permission = entry.getValue().get(playerUuid);
+            if (permission != null) {
+                permissions.put(entry.getKey(), permission);
+            }
+        }
+        return new PlayerChatState(isBanned(playerUuid), permissions, getBlockedChannels(playerUuid), getInvitations(playerUuid));
+    }
+
+    @Override
+    public List<ChatChannel> loadChannels() {
+        return new ArrayList<>(channelCache.values());
+    }
+
+    @Override
+    public void saveChannel(ChatChannel channel) {
+        channelCache.put(channel.getName(), channel);
+        markChannelDataDirty();
+        logToConsole("Saved channel to file: " + channel.getName());
+    }
+
+    @Override
+    public void deleteChannel(String channelName) {
+        ChatChannel removed = channelCache.remove(channelName);
+        if (removed != null) {
+            markChannelDataDirty();
+            logToConsole("Deleted channel from file: " + channelName);
+        } else {
+            logToConsole("Channel not found in cache: " + channelName);
+        }
+    }
+
+    @Override
+    public void blockUser(UUID playerUuid, String channelName, UUID blockedBy, String reason) {
+        synchronized (journalLock) {
+            channelBlocks.computeIfAbsent(channelName, k -> ConcurrentHashMap.newKeySet()).add(playerUuid);
+            recordBlockChange(ChatDataJournal.BLOCK_ADD, channelName, playerUuid.toString());
+            logToConsole("Blocked user " + playerUuid + " from channel " + channelName);
+        }
+    }
+
+    @Override
+    public void unblockUser(UUID playerUuid, String channelName) {
+        synchronized (journalLock) {
+            Set<UUID> blockedUsers = channelBlocks.get(channelName);
+            if (blockedUsers != null) {
+                boolean removed = blockedUsers.remove(playerUuid);
+                if (removed) {
+                    recordBlockChange(ChatDataJournal.BLOCK_REMOVE, channelName, playerUuid.toString());
+                    logToConsole("Unblocked user " + playerUuid + " from channel " + channelName);
+                } else {
+                    logToConsole("User " + playerUuid + " was not blocked from channel " + channelName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isUserBlocked(UUID playerUuid, String channelName) {
+        return channelBlocks.getOrDefault(channelName, Collections.emptySet()).contains(playerUuid);
+    }
+
+    @Override
+    public Set<String> getBlockedChannels(UUID playerUuid) {
+        Set<String> blockedChannels = new HashSet<>();
+        for (Map.Entry<String, Set<UUID>> entry : channelBlocks.entrySet()) {
+            if (entry.getValue().contains(playerUuid)) {
+                blockedChannels.add(entry.getKey());
+            }
+        }
+        return blockedChannels;
+    }
+
+    @Override
+    public void clearBlocks(UUID playerUuid) {
+        synchronized (journalLock) {
+            boolean changed = false;
+            for (Set<UUID> blockedUsers : channelBlocks.values()) {
+                if (blockedUsers.remove(playerUuid)) {
+                    changed = true;
+                }
+            }
+            if (changed) {
+                recordBlockChange(ChatDataJournal.BLOCK_CLEAR, playerUuid.toString());
+                logToConsole("Cleared all blocks for user " + playerUuid);
+            }
+        }
+    }
+
+    @Override
+    public void addMember(UUID playerUuid, String chatName) {
+        synchronized (journalLock) {
+            userChatMemberships.computeIfAbsent(playerUuid, k -> ConcurrentHashMap.newKeySet()).add(chatName);
+            recordChatChange(ChatDataJournal.MEMBER_ADD, playerUuid.toString(), chatName);
+        }
+    }
+
+    @Override
+    public void removeMember(UUID playerUuid, String chatName) {
+        synchronized (journalLock) {
+            Set<String> chats = userChatMemberships.get(playerUuid);
+            if (chats != null) {
+                chats.remove(chatName);
+            }
+            recordChatChange(ChatDataJournal.MEMBER_REMOVE, playerUuid.toString(), chatName);
+        }
+    }
+
+    @Override
+    public boolean isMember(UUID playerUuid, String chatName) {
+        return userChatMemberships.getOrDefault(playerUuid, Collections.emptySet()).contains(chatName);
+    }
+
+    @Override
+    public Set<String> getUserChats(UUID playerUuid) {
+        return new HashSet<>(userChatMemberships.getOrDefault(playerUuid, Collections.emptySet()));
+    }
+
+    @Override
+    public Set<UUID> getChatMembers(String chatName) {
+        Set<UUID> members = new HashSet<>();
+        for (Map.Entry<UUID, Set<String>> entry : userChatMemberships.entrySet()) {
+            if (entry.getValue().contains(chatName)) {
+                members.add(entry.getKey());
+            }
+        }
+        return members;
+    }
+
+    @Override
+    public void setPermission(UUID playerUuid, String chatName, String permissionLevel, UUID grantedBy) {
+        synchronized (journalLock) {
+            chatPermissions.computeIfAbsent(chatName, k -> new ConcurrentHashMap<>()).put(playerUuid, permissionLevel);
+            recordChatChange(ChatDataJournal.PERMISSION_SET, chatName, playerUuid.toString(), permissionLevel);
+            logToConsole("Set permission for " + playerUuid + " in " + chatName + " to " + permissionLevel);
+        }
+    }
+
+    @Override
+    public void removePermission(UUID playerUuid, String chatName) {
+        synchronized (journalLock) {
+            Map<UUID, String> chatPerms = chatPermissions.get(chatName);
+            if (chatPerms != null) {
+                chatPerms.remove(playerUuid);
+            }
+            recordChatChange(ChatDataJournal.PERMISSION_REMOVE, chatName, playerUuid.toString());
+        }
+    }
+
+    @Override
+    public void removeMute(UUID playerUuid, String chatName) {
+        synchronized (journalLock) {
+            try {
+                Map<UUID, String> chatPerms = chatPermissions.computeIfAbsent(chatName, k -> new ConcurrentHashMap<>());
+
+                String currentPermission = chatPerms.get(playerUuid);
+
+                if ("muted".equals(currentPermission)) {
+                    String removedPermission = chatPerms.remove(playerUuid);
+                    logToConsole("Removed mute permission for player " + playerUuid + " from chat " + chatName +
+                            " (removed: " + removedPermission + ")");
+
+                    recordChatChange(ChatDataJournal.PERMISSION_REMOVE, chatName, playerUuid.toString());
+                } else {
+                    logToConsole("Player " + playerUuid + " was not muted in chat " + chatName +
+                            " (current permission: " + currentPermission + ")");
+                }
+            } catch (Exception e) {
+                logToConsole("Error in unmute operation: " + e.getMessage());
+                e.printStackTrace();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public String getPermission(UUID playerUuid, String chatName) {
+        return chatPermissions.getOrDefault(chatName, Collections.emptyMap()).get(playerUuid);
+    }
+
+    @Override
+    public Map<UUID, String> getPermissions(String chatName) {
+        return new HashMap<>(chatPermissions.getOrDefault(chatName, Collections.emptyMap()));
+    }
+
+    @Override
+    public void addInvitation(UUID invitedPlayer, String chatName, UUID invitedBy) {
+        synchronized (journalLock) {
+            chatInvitations.computeIfAbsent(invitedPlayer, k -> ConcurrentHashMap.newKeySet()).add(chatName);
+            recordChatChange(ChatDataJournal.INVITE_ADD, invitedPlayer.toString(), chatName);
+            logToConsole("Added chat invitation for " + invitedPlayer + " to chat " + chatName);
+        }
+    }
+
+    @Override
+    public void removeInvitation(UUID playerUuid, String chatName) {
+        synchronized (journalLock) {
+            Set<String> invitations = chatInvitations.get(playerUuid);
+            if (invitations != null) {
+                boolean removed = invitations.remove(chatName);
+                if (removed) {
+                    recordChatChange(ChatDataJournal.INVITE_REMOVE, playerUuid.toString(), chatName);
+                    logToConsole("Removed chat invitation for " + playerUuid + " from chat " + chatName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasInvitation(UUID playerUuid, String chatName) {
+        return chatInvitations.getOrDefault(playerUuid, Collections.emptySet()).contains(chatName);
+    }
+
+    @Override
+    public Set<String> getInvitations(UUID playerUuid) {
+        return new HashSet<>(chatInvitations.getOrDefault(playerUuid, Collections.emptySet()));
+    }
+
+    @Override
+    public void clearInvitations(UUID playerUuid) {
+        synchronized (journalLock) {
+            Set<String> removed = chatInvitations.remove(playerUuid);
+            if (removed != null && !removed.isEmpty()) {
+                recordChatChange(ChatDataJournal.INVITE_CLEAR, playerUuid.toString());
+                logToConsole("Cleared all invitations for " + playerUuid);
+            }
+        }
+    }
+
+    @Override
+    public void banUser(UUID playerUuid, UUID bannedBy, String reason) {
+        synchronized (journalLock) {
+            bannedUsers.add(playerUuid);
+            recordChatChange(ChatDataJournal.BAN_ADD, playerUuid.toString());
+        }
+    }
+
+    @Override
+    public void unbanUser(UUID playerUuid) {
+        synchronized (journalLock) {
+            bannedUsers.remove(playerUuid);
+            recordChatChange(ChatDataJournal.BAN_REMOVE, playerUuid.toString());
+        }
+    }
+
+    @Override
+    public boolean isBanned(UUID playerUuid) {
+        return bannedUsers.contains(playerUuid);
+    }
+
+    @Override
+    public int getChannelCount(UUID playerUuid) {
+        return channelCountCache.getOrDefault(playerUuid, 0);
+    }
+
+    @Override
+    public void incrementChannelCount(UUID playerUuid) {
+        channelCountCache.merge(playerUuid, 1, Integer::sum);
+        markChannelDataDirty();
+    }
+
+    @Override
+    public void decrementChannelCount(UUID playerUuid) {
+        channelCountCache.compute(playerUuid, (k, count) -> count == null ? 0 : Math.max(0, count - 1));
+        markChannelDataDirty();
+    }
+
+    @Override
+    public void recordChannelCreation(UUID playerUuid, String channelName, String serverName) {
+        String playerSection = "players." + playerUuid.toString() + ".channels";
+        synchronized (channelDataConfig) {
+            channelDataConfig.set(playerSection + "." + channelName + ".created_at", System.currentTimeMillis());
+            channelDataConfig.set(playerSection + "." + channelName + ".is_active", true);
+        }
+        markChannelDataDirty();
+    }
+
+    @Override
+    public void recordChannelDeletion(UUID playerUuid, String channelName) {
+        String playerSection = "players." + playerUuid.toString() + ".channels";
+        synchronized (channelDataConfig) {
+            channelDataConfig.set(playerSection + "." + channelName + ".is_active", false);
+        }
+        markChannelDataDirty();
+    }
+
+    @Override
+    public int streamChatHistory(String chatName, Timestamp beforeTimestamp, long beforeId, int limit, Consumer<StorageManager.ChatMessage> consumer) {
+        // File logs are plain text for people to read, they are not searched. Recent history still comes from memory
+        return 0;
+    }
+
+    private void markChatDataDirty() {
+        chatDataDirty.set(true);
+    }
+
+    private void markChannelDataDirty() {
+        channelDataDirty.set(true);
+    }
+
+    private void startFileFlushTask() {
+        long intervalTicks = Math.max(1L, plugin.getConfig().getLong("storage.file.save-interval", 2) * 20L);
+        compatibilityManager.runTaskTimerAsync(this::flushDirtyFiles, intervalTicks, intervalTicks);
+    }
+
+    private void openJournal() {
+        journalCompactThreshold = plugin.getConfig().getInt("storage.file.compact-after", 10000);
+        try {
+            journal = new ChatDataJournal(new File(plugin.getDataFolder(), "chats.journal"));
+            int replayed = journal.replay(this::applyJournalRecord);
+            if (replayed > 0) {
+                logToConsole("Replayed " + replayed + " chat data changes from the journal");
+            }
+        } catch (IOException e) {
+            logToConsole("Failed to open chat data journal, falling back to full file saves: " + e.getMessage());
+            if (journal != null) {
+                journal.close();
+            }
+            journal = null;
+        }
+    }
+
+    private void applyJournalRecord(String[] record) {
+        try {
+            switch (record[0]) {
+                case ChatDataJournal.MEMBER_ADD:
+                    userChatMemberships.computeIfAbsent(UUID.fromString(record[1]), k -> ConcurrentHashMap.newKeySet()).add(record[2]);
+                    break;
+                case ChatDataJournal.MEMBER_REMOVE: {
+                    Set<String> chats = userChatMemberships.get(UUID.fromString(record[1]));
+                    if (chats != null) {
+                        chats.remove(record[2]);
+                    }
+                    break;
+                }
+                case ChatDataJournal.PERMISSION_SET:
+                    chatPermissions.computeIfAbsent(record[1], k -> new ConcurrentHashMap<>()).put(UUID.fromString(record[2]), record[3]);
+                    break;
+                case ChatDataJournal.PERMISSION_REMOVE: {
+                    Map<UUID, String> chatPerms = chatPermissions.get(record[1]);
+                    if (chatPerms != null) {
+                        chatPerms.remove(UUID.fromString(record[2]));
+                    }
+                    break;
+                }
+                case ChatDataJournal.BAN_ADD:
+                    bannedUsers.add(UUID.fromString(record[1]));
+                    break;
+                case ChatDataJournal.BAN_REMOVE:
+                    bannedUsers.remove(UUID.fromString(record[1]));
+                    break;
+                case ChatDataJournal.BLOCK_ADD:
+                    channelBlocks.computeIfAbsent(record[1], k -> ConcurrentHashMap.newKeySet()).add(UUID.fromString(record[2]));
+                    break;
+                case ChatDataJournal.BLOCK_REMOVE: {
+                    Set<UUID> blockedUsers = channelBlocks.get(record[1]);
+                    if (blockedUsers != null) {
+                        blockedUsers.remove(UUID.fromString(record[2]));
+                    }
+                    break;
+                }
+                case ChatDataJournal.BLOCK_CLEAR: {
+                    UUID playerUuid = UUID.fromString(record[1]);
+                    for (Set<UUID> blockedUsers : channelBlocks.values()) {
+                        blockedUsers.remove(playerUuid);
+                    }
+                    break;
+                }
+                case ChatDataJournal.INVITE_ADD:
+                    chatInvitations.computeIfAbsent(UUID.fromString(record[1]), k -> ConcurrentHashMap.newKeySet()).add(record[2]);
+                    break;
+                case ChatDataJournal.INVITE_REMOVE: {
+                    Set<String> invitations = chatInvitations.get(UUID.fromString(record[1]));
+                    if (invitations != null) {
+                        invitations.remove(record[2]);
+                    }
+                    break;
+                }
+                case ChatDataJournal.INVITE_CLEAR:
+                    chatInvitations.remove(UUID.fromString(record[1]));
+                    break;
+                default:
+                    logToConsole("Unknown chat data journal record: " + String.join(" ", record));
+                    break;
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            // The journal already drops cut off lines and wrong field counts, so a field itself is malformed
+            logToConsole("Skipping broken chat data journal record: " + String.join(" ", record));
+        }
+    }
+
+    private void recordChatChange(String... record) {
+        if (!appendToJournal(record)) {
+            markChatDataDirty();
+        }
+    }
+
+    private void recordBlockChange(String... record) {
+        if (!appendToJournal(record)) {
+            markChannelDataDirty();
+        }
+    }
+
+    private boolean appendToJournal(String... record) {
+        ChatDataJournal current = journal;
+        if (current == null) {
+            return false;
+        }
+
+        try {
+            current.append(record);
+            return true;
+        } catch (IOException e) {
+            logToConsole("Failed to write to chat data journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Folds the journal into chats.yml / channel_data.yml. The rotated journal is only deleted once both are written
+    private synchronized void compactJournal() {
+        try {
+            synchronized (journalLock) {
+                journal.rotate();
+            }
+        } catch (IOException e) {
+            logToConsole("Failed to rotate chat data journal: " + e.getMessage());
+            return;
+        }
+
+        chatDataDirty.set(false);
+        channelDataDirty.set(false);
+        if (saveChatDataToFile() && saveChannelDataToFile()) {
+            journal.discardRotated();
+        } else {
+            chatDataDirty.set(true);
+            channelDataDirty.set(true);
+        }
+    }
+
+    // Writes each data file at most once per call, and only if something changed since the last write
+    private synchronized void flushDirtyFiles() {
+        if (journal != null) {
+            if (journal.size() > 0 && journal.size() >= journalCompactThreshold) {
+                compactJournal();
+            } else {
+                try {
+                    journal.sync();
+                } catch (IOException e) {
+                    logToConsole("Failed to sync chat data journal: " + e.getMessage());
+                }
+            }
+        }
+
+        if (chatDataDirty.getAndSet(false) && !saveChatDataToFile()) {
+            chatDataDirty.set(true);
+        }
+        if (channelDataDirty.getAndSet(false) && !saveChannelDataToFile()) {
+            channelDataDirty.set(true);
+        }
+    }
+
+    private boolean saveChannelDataToFile() {
+        String contents;
+        synchronized (channelDataConfig) {
+            for (Map.Entry<UUID, Integer> entry : channelCountCache.entrySet()) {
+                channelDataConfig.set("players." + entry.getKey().toString() + ".channel_count", entry.getValue());
+            }
+            channelDataConfig.set("channel_blocks", null);
+            for (Map.Entry<String, Set<UUID>> entry : channelBlocks.entrySet()) {
+                String channelName = entry.getKey();
+                List<String> blockedList = new ArrayList<>();
+                for (UUID uuid : entry.getValue()) {
+                    blockedList.add(uuid.toString());
+                }
+                if (!blockedList.isEmpty()) {
+                    channelDataConfig.set("channel_blocks." + channelName, blockedList);
+                }
+            }
+
+            channelDataConfig.set("custom_channels", null);
+            for (ChatChannel channel : channelCache.values()) {
+                String path = "custom_channels." + channel.getName();
+                channelDataConfig.set(path + ".prefix", channel.getPrefix());
+                channelDataConfig.set(path + ".is_private", channel.isPrivate());
+                channelDataConfig.set(path + ".owner", channel.getOwner().toString());
+                channelDataConfig.set(path + ".description", channel.getDescription());
+                channelDataConfig.set(path + ".required_permission", channel.getRequiredPermission());
+            }
+            contents = channelDataConfig.saveToString();
+        }
+
+        try {
+            writeAtomically(channelDataFile, contents.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            logToConsole("Failed to save channel data to file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Writes to a temp file and renames it over the target, so a crash never leaves a half written file behind
+    private void writeAtomically(File target, byte[] contents) throws IOException {
+        File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(contents);
+            out.getFD().sync();
+        }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private boolean saveChatDataToFile() {
+        if (!chatDataWritable) {
+            return false;
+        }
+        if (binaryChatData) {
+            return saveChatDataToBinaryFile();
+        }
+        return saveChatDataToYamlFile();
+    }
+
+    private boolean saveChatDataToBinaryFile() {
+        try {
+            writeAtomically(chatBinaryFile, ChatDataBinaryFormat.encode(userChatMemberships, chatPermissions, chatInvitations, bannedUsers));
+            return true;
+        } catch (IOException e) {
+            logToConsole("Failed to save chat data to binary file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean exportChatDataToYaml() {
+        return saveChatDataToYamlFile();
+    }
+
+    // Replaces the chat data in memory with chats.yml and writes it back out in the configured format
+    public synchronized boolean importChatDataFromYaml() {
+        try {
+            synchronized (chatDataConfig) {
+                chatDataConfig.load(chatDataFile);
+            }
+        } catch (IOException | InvalidConfigurationException e) {
+            logToConsole("Failed to read " + chatDataFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+
+        clearChatData();
+        loadChatDataFromFile();
+        loadChatInvitationsFromFile();
+
+        if (journal != null) {
+            compactJournal();
+        } else {
+            markChatDataDirty();
+        }
+        logToConsole("Imported chat data from " + chatDataFile.getName());
+        return true;
+    }
+
+    private boolean saveChatDataToYamlFile() {
+        String contents;
+        synchronized (chatDataConfig) {
+            chatDataConfig.set("memberships", null);
+            for (Map.Entry<UUID, Set<String>> entry : userChatMemberships.entrySet()) {
+                chatDataConfig.set("memberships." + entry.getKey().toString(), new ArrayList<>(entry.getValue()));
+            }
+
+            chatDataConfig.set("permissions", null);
+            for (Map.Entry<String, Map<UUID, String>> chatEntry : chatPermissions.entrySet()) {
+                String chatName = chatEntry.getKey();
+                for (Map.Entry<UUID, String> permEntry : chatEntry.getValue().entrySet()) {
+                    String permission = permEntry.getValue();
+                    if (permission != null && !permission.trim().isEmpty()) {
+                        chatDataConfig.set("permissions." + chatName + "." + permEntry.getKey().toString(), permission);
+                    }
+                }
+            }
+
+            chatDataConfig.set("invitations", null);
+            for (Map.Entry<UUID, Set<String>> entry : chatInvitations.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    chatDataConfig.set("invitations." + entry.getKey().toString(), new ArrayList<>(entry.getValue()));
+                }
+            }
+
+            List<String> bannedList = new ArrayList<>();
+            for (UUID uuid : bannedUsers) {
+                bannedList.add(uuid.toString());
+            }
+            chatDataConfig.set("banned_users", bannedList);
+            contents = chatDataConfig.saveToString();
+        }
+
+        try {
+            writeAtomically(chatDataFile, contents.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            logToConsole("Failed to save chat data to file: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the chat path checks for one player, loaded together when they log in.
+ */
+public class PlayerChatState {
+    public final boolean banned;
+    public final Map<String, String> permissions;
+    public final Set<String> blockedChannels;
+    public final Set<String> invitations;
+
+    public PlayerChatState(boolean banned, Map<String, String> permissions, Set<String> blockedChannels, Set<String> invitations) {
+        this.banned = banned;
+        this.permissions = permissions;
+        this.blockedChannels = blockedChannels;
+        this.invitations = invitations;
+    }
+}
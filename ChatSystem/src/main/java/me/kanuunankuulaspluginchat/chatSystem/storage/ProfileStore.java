@@ -0,0 +1,316 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * Every player profile in one file (profiles.dat) instead of one file per player.
+ * Records are appended as uuid, length, checksum, data; a newer record for the same player replaces the older one.
+ * The offset of each player's newest record is kept in memory, built by reading the records on open,
+ * so a lookup is one positioned read. Once most of the file is replaced records it is rewritten without them.
+ * The data is opaque here, UserProfileManager decides what a profile looks like.
+ */
+public class ProfileStore {
+
+    private static final int MAGIC = 0x43435053; // "CCPS"
+    private static final short VERSION = 2;
+    private static final int FILE_HEADER_BYTES = 6;
+    private static final int RECORD_HEADER_BYTES = 24;
+    // Version 1 records had no checksum
+    private static final int V1_RECORD_HEADER_BYTES = 20;
+    private static final long COMPACT_MIN_BYTES = 1024 * 1024;
+
+    private final File file;
+    private Map<UUID, Long> offsets = new HashMap<>();
+    private FileChannel channel;
+    private int recordHeaderBytes = RECORD_HEADER_BYTES;
+    private long liveBytes = 0;
+
+    public ProfileStore(File file) {
+        this.file = file;
+    }
+
+    public synchronized void open() throws IOException {
+        if (!file.exists() || file.length() < FILE_HEADER_BYTES) {
+            writeNewFile(file);
+        }
+
+        long validEnd = scan();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > validEnd) {
+            // A record cut off or torn by a crash, drop it and everything after it
+            channel.truncate(validEnd);
+        }
+
+        if (recordHeaderBytes != RECORD_HEADER_BYTES) {
+            try {
+                rewrite();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    private long scan() throws IOException {
+        offsets.clear();
+        liveBytes = 0;
+        Map<UUID, Integer> sizes = new HashMap<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a profile store");
+            }
+            short version = in.readShort();
+            if (version == VERSION) {
+                recordHeaderBytes = RECORD_HEADER_BYTES;
+            } else if (version == 1) {
+                recordHeaderBytes = V1_RECORD_HEADER_BYTES;
+            } else {
+                throw new IOException("Unsupported " + file.getName() + " version " + version);
+            }
+            boolean checked = recordHeaderBytes == RECORD_HEADER_BYTES;
+
+            long position = FILE_HEADER_BYTES;
+            long fileLength = file.length();
+            while (position + recordHeaderBytes <= fileLength) {
+                UUID playerId;
+                int length;
+                int checksum = 0;
+                try {
+                    playerId = new UUID(in.readLong(), in.readLong());
+                    length = in.readInt();
+                    if (checked) {
+                        checksum = in.readInt();
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || position + recordHeaderBytes + length > fileLength) {
+                    break;
+                }
+                if (checked) {
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+                    if (checksum(playerId, data) != checksum) {
+                        break;
+                    }
+                } else {
+                    in.skipNBytes(length);
+                }
+
+                offsets.put(playerId, position);
+                sizes.put(playerId, recordHeaderBytes + length);
+                position += recordHeaderBytes + length;
+            }
+
+            for (int size : sizes.values()) {
+                liveBytes += size;
+            }
+            return position;
+        }
+    }
+
+    public synchronized byte[] read(UUID playerId) throws IOException {
+        Long offset = offsets.get(playerId);
+        if (offset == null) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(recordHeaderBytes);
+        readFully(header, offset);
+        header.flip();
+        header.position(16);
+        ByteBuffer data = ByteBuffer.allocate(header.getInt());
+        readFully(data, offset + recordHeaderBytes);
+        return data.array();
+    }
+
+    public synchronized boolean contains(UUID playerId) {
+        return offsets.containsKey(playerId);
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    public synchronized void write(UUID playerId, byte[] data) throws IOException {
+        writeAll(Map.of(playerId, data));
+    }
+
+    /**
+     * Appends all records with one write and one sync, so saving many profiles costs about as much as saving one.
+     */
+    public synchronized void writeAll(Map<UUID, byte[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+            writeRecord(out, record.getKey(), record.getValue());
+        }
+        out.flush();
+
+        long position = channel.size();
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, position + bytes.position());
+        }
+        channel.force(false);
+
+        for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+            Long previous = offsets.put(record.getKey(), position);
+            if (previous != null) {
+                liveBytes -= recordSize(previous);
+            }
+            int size = RECORD_HEADER_BYTES + record.getValue().length;
+            liveBytes += size;
+            position += size;
+        }
+
+        if (channel.size() > COMPACT_MIN_BYTES && channel.size() > liveBytes * 2) {
+            try {
+                rewrite();
+            } catch (IOException e) {
+                // The records above are already synced, the store just stays bigger until the next try
+                logToConsole("Failed to compact " + file.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Like writeAll, but leaves players the store already has alone. Returns how many were written.
+     */
+    public synchronized int writeAbsent(Map<UUID, byte[]> records) throws IOException {
+        Map<UUID, byte[]> absent = new HashMap<>(records);
+        absent.keySet().removeIf(offsets::containsKey);
+        writeAll(absent);
+        return absent.size();
+    }
+
+    private long recordSize(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset + 16);
+        length.flip();
+        return recordHeaderBytes + length.getInt();
+    }
+
+    /**
+     * Rewrites only the newest record of every player into a new file in the current format and swaps it in.
+     * The new file is opened before it replaces the old one, and the old channel is only closed after that,
+     * so a failure anywhere leaves the store working on the old file.
+     */
+    private void rewrite() throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Map<UUID, Long> newOffsets = new HashMap<>();
+        FileChannel newChannel = null;
+
+        try {
+            long position = FILE_HEADER_BYTES;
+            try (FileOutputStream stream = new FileOutputStream(temp)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                for (UUID playerId : offsets.keySet()) {
+                    byte[] data = read(playerId);
+                    writeRecord(out, playerId, data);
+                    newOffsets.put(playerId, position);
+                    position += RECORD_HEADER_BYTES + data.length;
+                }
+                out.flush();
+                stream.getFD().sync();
+            }
+
+            newChannel = FileChannel.open(temp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            FileChannel oldChannel = channel;
+            channel = newChannel;
+            newChannel = null;
+            offsets = newOffsets;
+            recordHeaderBytes = RECORD_HEADER_BYTES;
+            liveBytes = position - FILE_HEADER_BYTES;
+            try {
+                oldChannel.close();
+            } catch (IOException ignored) {
+            }
+        } catch (IOException e) {
+            if (newChannel != null) {
+                try {
+                    newChannel.close();
+                } catch (IOException ignored) {
+                }
+            }
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Profile record at " + position + " is cut off");
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID playerId, byte[] data) throws IOException {
+        out.writeLong(playerId.getMostSignificantBits());
+        out.writeLong(playerId.getLeastSignificantBits());
+        out.writeInt(data.length);
+        out.writeInt(checksum(playerId, data));
+        out.write(data);
+    }
+
+    // Covers the uuid and length too, so a zero-filled tail after a torn append never passes
+    private static int checksum(UUID playerId, byte[] data) {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(20);
+        header.putLong(playerId.getMostSignificantBits());
+        header.putLong(playerId.getLeastSignificantBits());
+        header.putInt(data.length);
+        crc.update(header.array());
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static void writeNewFile(File target) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(target.toPath()))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+        }
+    }
+}
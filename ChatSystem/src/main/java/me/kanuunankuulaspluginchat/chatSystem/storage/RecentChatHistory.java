@@ -0,0 +1,126 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * The last few messages of every chat, kept in memory from the send path so recent history needs no database read.
+ * Each chat has a fixed size ring written without locks: a writer claims a sequence number and stores into its slot,
+ * readers walk back from the newest and stop at the first slot that has already been reused.
+ */
+public class RecentChatHistory {
+
+    private static class Slot {
+        final long sequence;
+        final StorageManager.ChatMessage message;
+
+        Slot(long sequence, StorageManager.ChatMessage message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+
+    private static class Ring {
+        final AtomicReferenceArray<Slot> slots;
+        final AtomicLong nextSequence = new AtomicLong();
+
+        Ring(int capacity) {
+            slots = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    public RecentChatHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public void add(String chatName, StorageManager.ChatMessage message) {
+        if (capacity <= 0) {
+            return;
+        }
+
+        Ring ring = rings.computeIfAbsent(chatName.toLowerCase(), k -> new Ring(capacity));
+        long sequence = ring.nextSequence.getAndIncrement();
+        ring.slots.set((int) (sequence % capacity), new Slot(sequence, message));
+    }
+
+    /**
+     * How many messages of the chat are held, at most the capacity.
+     */
+    public int size(String chatName) {
+        Ring ring = rings.get(chatName.toLowerCase());
+        return ring == null ? 0 : (int) Math.min(ring.nextSequence.get(), capacity);
+    }
+
+    /**
+     * Passes up to limit messages to the consumer, newest first, and returns how many it passed.
+     */
+    public int readLatest(String chatName, int limit, Consumer<StorageManager.ChatMessage> consumer) {
+        Ring ring = rings.get(chatName.toLowerCase());
+        if (ring == null) {
+            return 0;
+        }
+
+        long newest = ring.nextSequence.get() - 1;
+        long oldest = Math.max(0, newest - Math.min(limit, capacity) + 1);
+        int count = 0;
+        for (long sequence = newest; sequence >= oldest; sequence--) {
+            Slot slot = ring.slots.get((int) (sequence % capacity));
+            if (slot == null || slot.sequence < sequence) {
+                // Claimed but not stored yet
+                continue;
+            }
+            if (slot.sequence > sequence) {
+                // Reused by a newer message, so everything older is gone too
+                break;
+            }
+            consumer.accept(slot.message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Like readLatest, but only messages older than before, which must be a message this history handed out.
+     * Passes nothing if before is no longer held.
+     */
+    public int readBefore(String chatName, StorageManager.ChatMessage before, int limit, Consumer<StorageManager.ChatMessage> consumer) {
+        Ring ring = rings.get(chatName.toLowerCase());
+        if (ring == null) {
+            return 0;
+        }
+
+        long newest = ring.nextSequence.get() - 1;
+        boolean passedBefore = false;
+        int count = 0;
+        for (long sequence = newest; sequence >= Math.max(0, newest - capacity + 1) && count < limit; sequence--) {
+            Slot slot = ring.slots.get((int) (sequence % capacity));
+            if (slot == null || slot.sequence < sequence) {
+                continue;
+            }
+            if (slot.sequence > sequence) {
+                break;
+            }
+            if (passedBefore) {
+                consumer.accept(slot.message);
+                count++;
+            } else if (slot.message == before) {
+                passedBefore = true;
+            }
+        }
+        return count;
+    }
+
+    public void remove(String chatName) {
+        rings.remove(chatName.toLowerCase());
+    }
+}
@@ -0,0 +1,175 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only chat log files for file storage.
+ * Lines go to logs/chat-<day>.log, or logs/<channel>/<day>.log when split per channel.
+ * A new file is started when the day changes or when the current one grows past maxFileBytes
+ * (the full one is renamed to name.N.log). Finished files can be gzipped.
+ * Only ever called from the ChatLogWriter thread.
+ */
+public class RollingFileChatLogSink implements ChatLogSink {
+
+    private final File logDirectory;
+    private final Logger logger;
+    private final boolean perChannel;
+    private final boolean includeTimestamps;
+    private final long maxFileBytes;
+    private final boolean compressRotated;
+
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    private final Map<String, OpenLog> openLogs = new HashMap<>();
+
+    public RollingFileChatLogSink(File logDirectory, Logger logger, boolean perChannel, boolean includeTimestamps, long maxFileBytes, boolean compressRotated) {
+        this.logDirectory = logDirectory;
+        this.logger = logger;
+        this.perChannel = perChannel;
+        this.includeTimestamps = includeTimestamps;
+        this.maxFileBytes = maxFileBytes;
+        this.compressRotated = compressRotated;
+    }
+
+    @Override
+    public void write(List<ChatLogEntry> batch) throws IOException {
+        for (ChatLogEntry entry : batch) {
+            Date date = new Date(entry.timestamp);
+            String day = dayFormat.format(date);
+            OpenLog log = getLog(entry.chatName, day);
+
+            String line = (includeTimestamps ? "[" + timeFormat.format(date) + "] " : "") +
+                    "[" + entry.chatName + "] " + entry.sender + ": " + entry.message;
+            log.append(line);
+
+            if (maxFileBytes > 0 && log.size >= maxFileBytes) {
+                closeLog(log);
+                openLogs.values().remove(log);
+                rotate(log.file);
+            }
+        }
+
+        for (OpenLog log : openLogs.values()) {
+            log.writer.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (OpenLog log : openLogs.values()) {
+            closeLog(log);
+        }
+        openLogs.clear();
+    }
+
+    private OpenLog getLog(String chatName, String day) throws IOException {
+        String key = perChannel ? sanitize(chatName) : "";
+        OpenLog log = openLogs.get(key);
+        if (log != null && log.day.equals(day)) {
+            return log;
+        }
+
+        // The day changed, so the old file is finished
+        if (log != null) {
+            closeLog(log);
+            openLogs.remove(key);
+            if (compressRotated) {
+                compress(log.file);
+            }
+        }
+
+        File directory = perChannel ? new File(logDirectory, key) : logDirectory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create log directory " + directory.getPath());
+        }
+
+        File file = new File(directory, perChannel ? day + ".log" : "chat-" + day + ".log");
+        log = new OpenLog(file, day);
+        openLogs.put(key, log);
+        return log;
+    }
+
+    private void closeLog(OpenLog log) {
+        try {
+            log.writer.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close chat log " + log.file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // Moves a finished log out of the way as name.N.log (gzipped if enabled) so the next write starts a fresh file
+    private void rotate(File file) {
+        if (!file.exists()) {
+            return;
+        }
+
+        String base = file.getName().substring(0, file.getName().length() - ".log".length());
+        File rotated;
+        int index = 1;
+        do {
+            rotated = new File(file.getParentFile(), base + "." + index + ".log");
+            index++;
+        } while (rotated.exists() || new File(rotated.getPath() + ".gz").exists());
+
+        if (!file.renameTo(rotated)) {
+            logger.warning("Failed to rotate chat log " + file.getName());
+            return;
+        }
+
+        if (compressRotated) {
+            compress(rotated);
+        }
+    }
+
+    private void compress(File file) {
+        File target = new File(file.getPath() + ".gz");
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(target))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            logger.warning("Failed to compress chat log " + file.getName() + ": " + e.getMessage());
+            target.delete();
+            return;
+        }
+        file.delete();
+    }
+
+    private static String sanitize(String chatName) {
+        return chatName.toLowerCase().replaceAll("[^a-z0-9_-]", "_");
+    }
+
+    private static class OpenLog {
+        private final File file;
+        private final String day;
+        private final BufferedWriter writer;
+        private long size;
+
+        private OpenLog(File file, String day) throws IOException {
+            this.file = file;
+            this.day = day;
+            this.size = file.length();
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        }
+
+        private void append(String line) throws IOException {
+            writer.write(line);
+            writer.newLine();
+            size += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+    }
+}
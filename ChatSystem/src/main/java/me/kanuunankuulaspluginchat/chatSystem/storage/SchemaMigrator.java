@@ -0,0 +1,136 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * Brings the SQL schema up to date after the CREATE TABLE IF NOT EXISTS statements, which never touch existing tables.
+ * Every change is a numbered migration. The ones already applied are kept in schema_version, so each runs once per database.
+ * Add new ones at the end and never change or reorder one that has shipped.
+ */
+class SchemaMigrator {
+
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    // Index names include the table so they are also unique in H2, where names are per schema
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Index active members of a chat",
+                    createIndex("chat_memberships", "idx_memberships_chat_active", "chat_name, is_active, player_uuid")),
+            new Migration(2, "Index active invitations of a player",
+                    createIndex("chat_invitations", "idx_invitations_player_active", "invited_player_uuid, is_active, chat_name")),
+            new Migration(3, "Index active blocks of a player",
+                    createIndex("channel_blocks", "idx_blocks_player_active", "player_uuid, is_active, channel_name")),
+            new Migration(4, "Index chat history by chat and time",
+                    createIndex("chat_logs", "idx_chat_logs_chat_timestamp", "chat_name, timestamp"))
+    );
+
+    private final DataSource dataSource;
+
+    SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    void migrate() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INT PRIMARY KEY,
+                        description VARCHAR(200),
+                        applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    )""")) {
+                stmt.executeUpdate();
+            }
+
+            Set<Integer> applied = new HashSet<>();
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT version FROM schema_version");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    applied.add(rs.getInt("version"));
+                }
+            }
+
+            for (Migration migration : MIGRATIONS) {
+                if (applied.contains(migration.version)) {
+                    continue;
+                }
+
+                logToConsole("Applying schema migration " + migration.version + ": " + migration.description);
+                migration.step.apply(connection);
+
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    stmt.setInt(1, migration.version);
+                    stmt.setString(2, migration.description);
+                    stmt.executeUpdate();
+                } catch (SQLException e) {
+                    // Another server sharing the database recorded it first, the index check below made this run harmless
+                    if (!isApplied(connection, migration.version)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isApplied(Connection connection, int version) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            stmt.setInt(1, version);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Skipped if the index is already there, so a migration interrupted half way or run by two servers at once is safe to repeat
+    private static Step createIndex(String table, String indexName, String columns) {
+        return connection -> {
+            if (indexExists(connection, table, indexName)) {
+                return;
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "CREATE INDEX " + indexName + " ON " + table + " (" + columns + ")")) {
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                if (!indexExists(connection, table, indexName)) {
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static boolean indexExists(Connection connection, String table, String indexName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,47 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import javax.sql.DataSource;
+
+public class SqlChatLogSink implements ChatLogSink {
+
+    private static final String INSERT_SQL = "INSERT INTO chat_logs (chat_name, sender, message, server_name, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    private final DataSource dataSource;
+
+    public SqlChatLogSink(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void write(List<ChatLogEntry> batch) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (ChatLogEntry entry : batch) {
+                stmt.setString(1, entry.chatName);
+                stmt.setString(2, entry.sender);
+                stmt.setString(3, entry.message);
+                stmt.setString(4, entry.serverName);
+                stmt.setTimestamp(5, new Timestamp(entry.timestamp));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            // Keys come back in batch order. Messages in recent history get theirs so history paging can go on from them
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (ChatLogEntry entry : batch) {
+                    long id = keys.next() ? keys.getLong(1) : -1;
+                    if (entry.recent != null) {
+                        entry.recent.setId(id);
+                    }
+                }
+            }
+        }
+    }
+}
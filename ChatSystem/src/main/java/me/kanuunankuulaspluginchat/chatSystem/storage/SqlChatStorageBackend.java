@@ -0,0 +1,1056 @@
+package me.kanuunankuulaspluginchat.chatSystem.storage;
+
+import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static me.kanuunankuulaspluginchat.chatSystem.storage.StorageManager.logToConsole;
+
+/**
+ * MySQL and embedded H2 storage. Both share one schema and one set of queries;
+ * H2 runs in MySQL mode and only needs its index names made unique.
+ */
+public class SqlChatStorageBackend implements ChatStorageBackend {
+
+    private static final Pattern CREATE_TABLE_NAME = Pattern.compile("CREATE TABLE IF NOT EXISTS (\\w+)");
+
+    // The queries checkQueryPlans looks at
+    private static final String SELECT_CHAT_MEMBERS_SQL = "SELECT player_uuid FROM chat_memberships WHERE chat_name = ? AND is_active = TRUE";
+    private static final String SELECT_INVITATIONS_SQL = "SELECT chat_name FROM chat_invitations WHERE invited_player_uuid = ? AND is_active = TRUE";
+    private static final String SELECT_CHAT_HISTORY_SQL = "SELECT id, sender, message, timestamp FROM chat_logs WHERE chat_name = ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    // Keyset page: (timestamp, id) before the last message of the previous page. The timestamp <= ? keeps it a range read of (chat_name, timestamp)
+    private static final String SELECT_CHAT_HISTORY_PAGE_SQL = "SELECT id, sender, message, timestamp FROM chat_logs WHERE chat_name = ? AND timestamp <= ? AND (timestamp < ? OR id < ?) ORDER BY timestamp DESC, id DESC LIMIT ?";
+
+    // Rows fetched per round trip while a history page is read, so a large page is not buffered whole
+    private static final int HISTORY_FETCH_SIZE = 100;
+
+    // Tables smaller than this are read whole by MySQL whatever the indexes, so those scans are not worth a warning
+    private static final long FULL_SCAN_WARNING_ROWS = 1000;
+
+    private final HikariDataSource dataSource;
+    private final boolean embedded;
+
+    private SqlChatStorageBackend(HikariDataSource dataSource, boolean embedded) {
+        this.dataSource = dataSource;
+        this.embedded = embedded;
+    }
+
+    public static SqlChatStorageBackend connectMySql(FileConfiguration config) throws ClassNotFoundException {
+        Class.forName("com.mysql.cj.jdbc.Driver");
+
+        String host = config.getString("storage.mysql.host", "localhost");
+        int port = config.getInt("storage.mysql.port", 3306);
+        String database = config.getString("storage.mysql.database", "minecraft");
+        String username = config.getString("storage.mysql.username", "root");
+        String password = config.getString("storage.mysql.password", "");
+
+        String url = "jdbc:mysql://" + host + ":" + port + "/" + database +
+                "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
+
+        return new SqlChatStorageBackend(createDataSource(config, "ChatControl-MySQL", "com.mysql.cj.jdbc.Driver", url, username, password, false), false);
+    }
+
+    /**
+     * Local H2 database in the plugin folder (chatdata.mv.db), run in MySQL mode so the MySQL schema
+     * and queries work unchanged. No server to set up, and chat history is kept like with MySQL.
+     */
+    public static SqlChatStorageBackend openEmbedded(FileConfiguration config, File dataFolder) throws ClassNotFoundException {
+        Class.forName("org.h2.Driver");
+
+        String url = "jdbc:h2:file:" + new File(dataFolder, "chatdata").getAbsolutePath() +
+                ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+
+        return new SqlChatStorageBackend(createDataSource(config, "ChatControl-H2", "org.h2.Driver", url, "sa", "", true), true);
+    }
+
+    private static HikariDataSource createDataSource(FileConfiguration config, String poolName, String driverClassName,
+                                                     String url, String username, String password, boolean embedded) {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setDriverClassName(driverClassName);
+        hikariConfig.setJdbcUrl(url);
+        hikariConfig.setUsername(username);
+        hikariConfig.setPassword(password);
+
+        hikariConfig.setMaximumPoolSize(config.getInt("storage.mysql.pool.maximum-pool-size", 10));
+        hikariConfig.setMinimumIdle(config.getInt("storage.mysql.pool.minimum-idle", 2));
+        hikariConfig.setConnectionTimeout(config.getLong("storage.mysql.pool.connection-timeout", 5000));
+        hikariConfig.setIdleTimeout(config.getLong("storage.mysql.pool.idle-timeout", 600000));
+        hikariConfig.setMaxLifetime(config.getLong("storage.mysql.pool.max-lifetime", 1800000));
+        hikariConfig.setKeepaliveTime(config.getLong("storage.mysql.pool.keepalive-time", 300000));
+
+        // Connector/J statement cache; H2 caches prepared statements per connection itself
+        int statementCacheSize = config.getInt("storage.mysql.pool.statement-cache-size", 250);
+        if (statementCacheSize > 0 && !embedded) {
+            hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+            hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+        }
+        if (!embedded) {
+            // Connector/J reads whole results into memory unless a statement with a fetch size can use a server cursor
+            hikariConfig.addDataSourceProperty("useCursorFetch", "true");
+        }
+
+        return new HikariDataSource(hikariConfig);
+    }
+
+    @Override
+    public String getName() {
+        return embedded ? "H2" : "MySQL";
+    }
+
+    @Override
+    public boolean sharesChatLog() {
+        return !embedded;
+    }
+
+    public void createTables() throws SQLException {
+        createChatTable();
+        createChannelTrackingTables();
+        createChatMembershipTables();
+        createBanTable();
+        createChannelBlockTable();
+        createChatInvitationsTable();
+        createChannelStorageTable();
+        new SchemaMigrator(dataSource).migrate();
+    }
+
+    /**
+     * Asks MySQL how it would run the queries the chat path depends on and warns about any that would read a
+     * whole large table, which usually means an index is missing or was dropped. H2 is skipped, its plans are not comparable.
+     */
+    public void checkQueryPlans() {
+        if (embedded) {
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            explain(connection, "chat members", SELECT_CHAT_MEMBERS_SQL, "global");
+            explain(connection, "player invitations", SELECT_INVITATIONS_SQL, UUID.randomUUID().toString());
+            explain(connection, "chat history", SELECT_CHAT_HISTORY_SQL, "global", 50);
+        } catch (SQLException e) {
+            logToConsole("Could not check query plans: " + e.getMessage());
+        }
+    }
+
+    private void explain(Connection connection, String queryName, String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long rows = rs.getLong("rows");
+                    if (rows < FULL_SCAN_WARNING_ROWS) {
+                        continue;
+                    }
+
+                    String extra = rs.getString("Extra");
+                    if ("ALL".equalsIgnoreCase(rs.getString("type"))) {
+                        logToConsole("Warning: the " + queryName + " query reads all of " + rs.getString("table")
+                                + " (about " + rows + " rows). Check that the indexes listed in schema_version exist.");
+                    } else if (extra != null && extra.contains("Using filesort")) {
+                        logToConsole("Warning: the " + queryName + " query sorts about " + rows + " rows of " + rs.getString("table")
+                                + " instead of reading them in index order. Check that the indexes listed in schema_version exist.");
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Set<UUID>> loadMemberships() {
+        Map<String, Set<UUID>> snapshot = new HashMap<>();
+        String selectSQL = "SELECT player_uuid, chat_name FROM chat_memberships WHERE is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                try {
+                    UUID uuid = UUID.fromString(rs.getString("player_uuid"));
+                    snapshot.computeIfAbsent(rs.getString("chat_name"), k -> new HashSet<>()).add(uuid);
+                } catch (IllegalArgumentException e) {
+                    logToConsole("Invalid UUID in chat memberships: " + rs.getString("player_uuid"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public ChatLogSink createChatLogSink() {
+        return new SqlChatLogSink(dataSource);
+    }
+
+    /**
+     * Null for H2: the embedded database belongs to this server alone, so there is no other server to keep in step.
+     */
+    public ChatEventSync createEventSync(String serverName, long keepMillis, ChatEventSync.Handler handler) {
+        return embedded ? null : new ChatEventSync(dataSource, serverName, keepMillis, handler);
+    }
+
+    public ChatLogRetention createLogRetention(File archiveDirectory, int keepDays, int maxRowsPerChat, int chunkSize, boolean archive) {
+        return new ChatLogRetention(dataSource, archiveDirectory, keepDays, maxRowsPerChat, chunkSize, archive, !embedded);
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+        logToConsole("Database connection pool closed.");
+    }
+
+    // H2 index names are unique per schema rather than per table, so prefix them with the table name there
+    private String schemaSQL(String createTableSQL) {
+        if (!embedded) {
+            return createTableSQL;
+        }
+
+        Matcher matcher = CREATE_TABLE_NAME.matcher(createTableSQL);
+        if (!matcher.find()) {
+            return createTableSQL;
+        }
+        return createTableSQL.replaceAll("INDEX (idx_\\w+)", "INDEX " + matcher.group(1) + "_$1");
+    }
+
+    private void createChatInvitationsTable() throws SQLException {
+        String createInvitationsSQL = """
+        CREATE TABLE IF NOT EXISTS chat_invitations (
+            id INT AUTO_INCREMENT PRIMARY KEY,
+            invited_player_uuid VARCHAR(36) NOT NULL,
+            chat_name VARCHAR(100) NOT NULL,
+            invited_by_uuid VARCHAR(36) NOT NULL,
+            invited_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+            expires_at TIMESTAMP NULL,
+            is_active BOOLEAN DEFAULT TRUE,
+            UNIQUE KEY unique_invitation (invited_player_uuid, chat_name),
+            INDEX idx_invited_player (invited_player_uuid),
+            INDEX idx_chat_name (chat_name),
+            INDEX idx_invited_by (invited_by_uuid),
+            INDEX idx_is_active (is_active)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(schemaSQL(createInvitationsSQL))) {
+            stmt.executeUpdate();
+            logToConsole("Chat invitations table created/verified successfully.");
+        }
+    }
+
+
+    private void createChannelBlockTable() throws SQLException {
+        String createChannelBlockSQL = """
+        CREATE TABLE IF NOT EXISTS channel_blocks (
+            id INT AUTO_INCREMENT PRIMARY KEY,
+            player_uuid VARCHAR(36) NOT NULL,
+            channel_name VARCHAR(100) NOT NULL,
+            blocked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+            blocked_by VARCHAR(36),
+            reason TEXT,
+            is_active BOOLEAN DEFAULT TRUE,
+            UNIQUE KEY unique_block (player_uuid, channel_name),
+            INDEX idx_player_uuid (player_uuid),
+            INDEX idx_channel_name (channel_name),
+            INDEX idx_is_active (is_active)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(schemaSQL(createChannelBlockSQL))) {
+            stmt.executeUpdate();
+            logToConsole("Channel blocks table created/verified successfully.");
+        }
+    }
+
+    private void createChatMembershipTables() throws SQLException {
+        String createMembershipsSQL = """
+            CREATE TABLE IF NOT EXISTS chat_memberships (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                player_uuid VARCHAR(36) NOT NULL,
+                chat_name VARCHAR(100) NOT NULL,
+                joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                is_active BOOLEAN DEFAULT TRUE,
+                UNIQUE KEY unique_membership (player_uuid, chat_name),
+                INDEX idx_player_uuid (player_uuid),
+                INDEX idx_chat_name (chat_name)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        String createPermissionsSQL = """
+            CREATE TABLE IF NOT EXISTS chat_permissions (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                player_uuid VARCHAR(36) NOT NULL,
+                chat_name VARCHAR(100) NOT NULL,
+                permission_level VARCHAR(50) NOT NULL,
+                granted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                granted_by VARCHAR(36),
+                UNIQUE KEY unique_permission (player_uuid, chat_name),
+                INDEX idx_player_uuid (player_uuid),
+                INDEX idx_chat_name (chat_name),
+                INDEX idx_permission_level (permission_level)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt1 = connection.prepareStatement(schemaSQL(createMembershipsSQL));
+             PreparedStatement stmt2 = connection.prepareStatement(schemaSQL(createPermissionsSQL))) {
+
+            stmt1.executeUpdate();
+            stmt2.executeUpdate();
+            logToConsole("Chat membership and permission tables created/verified successfully.");
+        }
+    }
+
+    private void createChannelStorageTable() throws SQLException {
+        String createChannelSQL = """
+        CREATE TABLE IF NOT EXISTS custom_channels (
+            id INT AUTO_INCREMENT PRIMARY KEY,
+            channel_name VARCHAR(100) NOT NULL UNIQUE,
+            channel_prefix VARCHAR(10),
+            is_private BOOLEAN DEFAULT FALSE,
+            owner_uuid VARCHAR(36) NOT NULL,
+            description TEXT,
+            required_permission VARCHAR(100),
+            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+            is_active BOOLEAN DEFAULT TRUE,
+            INDEX idx_channel_name (channel_name),
+            INDEX idx_owner_uuid (owner_uuid),
+            INDEX idx_is_active (is_active)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(schemaSQL(createChannelSQL))) {
+            stmt.executeUpdate();
+            logToConsole("Custom channels table created/verified successfully.");
+        }
+    }
+
+
+    private void createBanTable() throws SQLException {
+        String createBanSQL = """
+            CREATE TABLE IF NOT EXISTS chat_bans (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                player_uuid VARCHAR(36) NOT NULL UNIQUE,
+                banned_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                banned_by VARCHAR(36),
+                reason TEXT,
+                is_active BOOLEAN DEFAULT TRUE,
+                INDEX idx_player_uuid (player_uuid),
+                INDEX idx_is_active (is_active)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(schemaSQL(createBanSQL))) {
+            stmt.executeUpdate();
+            logToConsole("Chat ban table created/verified successfully.");
+        }
+    }
+
+
+    private void createChatTable() throws SQLException {
+        String createTableSQL = """
+            CREATE TABLE IF NOT EXISTS chat_logs (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                chat_name VARCHAR(100) NOT NULL,
+                sender VARCHAR(50) NOT NULL,
+                message TEXT NOT NULL,
+                timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                server_name VARCHAR(50),
+                INDEX idx_chat_name (chat_name),
+                INDEX idx_sender (sender),
+                INDEX idx_timestamp (timestamp)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(schemaSQL(createTableSQL))) {
+            stmt.executeUpdate();
+            logToConsole("Chat logs table created/verified successfully.");
+        }
+    }
+
+    private void createChannelTrackingTables() throws SQLException {
+        String createPlayerChannelsSQL = """
+            CREATE TABLE IF NOT EXISTS player_channels (
+                player_uuid VARCHAR(36) PRIMARY KEY,
+                channel_count INT DEFAULT 0,
+                last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        String createChannelOwnershipSQL = """
+            CREATE TABLE IF NOT EXISTS channel_ownership (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                player_uuid VARCHAR(36) NOT NULL,
+                channel_name VARCHAR(100) NOT NULL,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                is_active BOOLEAN DEFAULT TRUE,
+                server_name VARCHAR(50),
+                UNIQUE KEY unique_player_channel (player_uuid, channel_name),
+                INDEX idx_player_uuid (player_uuid),
+                INDEX idx_channel_name (channel_name),
+                INDEX idx_is_active (is_active)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt1 = connection.prepareStatement(schemaSQL(createPlayerChannelsSQL));
+             PreparedStatement stmt2 = connection.prepareStatement(schemaSQL(createChannelOwnershipSQL))) {
+
+            stmt1.executeUpdate();
+            stmt2.executeUpdate();
+            logToConsole("Channel tracking tables created/verified successfully.");
+        }
+    }
+
+    @Override
+    public PlayerChatState loadPlayerState(UUID playerUuid) {
+        String selectSQL = """
+            SELECT 'ban' AS kind, '' AS chat_name, '' AS permission_level FROM chat_bans WHERE player_uuid = ? AND is_active = TRUE
+            UNION ALL
+            SELECT 'permission', chat_name, permission_level FROM chat_permissions WHERE player_uuid = ?
+            UNION ALL
+            SELECT 'block', channel_name, '' FROM channel_blocks WHERE player_uuid = ? AND is_active = TRUE
+            UNION ALL
+            SELECT 'invite', chat_name, '' FROM chat_invitations WHERE invited_player_uuid = ? AND is_active = TRUE
+            """;
+
+        boolean banned = false;
+        Map<String, String> permissions = new HashMap<>();
+        Set<String> blockedChannels = new HashSet<>();
+        Set<String> invitations = new HashSet<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            String uuid = playerUuid.toString();
+            for (int i = 1; i <= 4; i++) {
+                stmt.setString(i, uuid);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    switch (rs.getString("kind")) {
+                        case "ban":
+                            banned = true;
+                            break;
+                        case "permission":
+                            permissions.put(rs.getString("chat_name"), rs.getString("permission_level"));
+                            break;
+                        case "block":
+                            blockedChannels.add(rs.getString("chat_name"));
+                            break;
+                        case "invite":
+                            invitations.add(rs.getString("chat_name"));
+                            break;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error loading chat state for " + playerUuid + ": " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        return new PlayerChatState(banned, permissions, blockedChannels, invitations);
+    }
+
+    @Override
+    public List<ChatChannel> loadChannels() {
+        List<ChatChannel> channels = new ArrayList<>();
+        String selectSQL = """
+        SELECT channel_name, channel_prefix, is_private, owner_uuid, description, required_permission
+        FROM custom_channels
+        WHERE is_active = TRUE
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString("channel_name");
+                    String prefix = rs.getString("channel_prefix");
+                    boolean isPrivate = rs.getBoolean("is_private");
+                    UUID owner = UUID.fromString(rs.getString("owner_uuid"));
+                    String description = rs.getString("description");
+                    String requiredPermission = rs.getString("required_permission");
+
+                    ChatChannel channel = new ChatChannel(name, prefix, isPrivate, owner, description, requiredPermission);
+                    channels.add(channel);
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error loading channels from database: " + e.getMessage());
+        }
+        return channels;
+    }
+
+    @Override
+    public void saveChannel(ChatChannel channel) {
+        String insertSQL = """
+        INSERT INTO custom_channels (channel_name, channel_prefix, is_private, owner_uuid, description, required_permission)
+        VALUES (?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            channel_prefix = ?,
+            is_private = ?,
+            description = ?,
+            required_permission = ?,
+            is_active = TRUE
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, channel.getName());
+            stmt.setString(2, channel.getPrefix());
+            stmt.setBoolean(3, channel.isPrivate());
+            stmt.setString(4, channel.getOwner().toString());
+            stmt.setString(5, channel.getDescription());
+            stmt.setString(6, channel.getRequiredPermission());
+            stmt.setString(7, channel.getPrefix());
+            stmt.setBoolean(8, channel.isPrivate());
+            stmt.setString(9, channel.getDescription());
+            stmt.setString(10, channel.getRequiredPermission());
+
+            stmt.executeUpdate();
+            logToConsole("Saved channel: " + channel.getName());
+        } catch (SQLException e) {
+            logToConsole("Error saving channel: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void deleteChannel(String channelName) {
+        String updateSQL = "UPDATE custom_channels SET is_active = FALSE WHERE channel_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, channelName);
+            int rowsAffected = stmt.executeUpdate();
+            if (rowsAffected > 0) {
+                logToConsole("Deleted channel from database: " + channelName);
+            } else {
+                logToConsole("Channel not found in database: " + channelName);
+            }
+        } catch (SQLException e) {
+            logToConsole("Error deleting channel from database: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void blockUser(UUID playerUuid, String channelName, UUID blockedBy, String reason) {
+        String insertSQL = """
+        INSERT INTO channel_blocks (player_uuid, channel_name, blocked_by, reason)
+        VALUES (?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE is_active = TRUE, blocked_at = CURRENT_TIMESTAMP, blocked_by = ?, reason = ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, channelName);
+            stmt.setString(3, blockedBy != null ? blockedBy.toString() : null);
+            stmt.setString(4, reason);
+            stmt.setString(5, blockedBy != null ? blockedBy.toString() : null);
+            stmt.setString(6, reason);
+            stmt.executeUpdate();
+            logToConsole("Blocked user " + playerUuid + " from channel " + channelName);
+        } catch (SQLException e) {
+            logToConsole("Error blocking user from channel: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void unblockUser(UUID playerUuid, String channelName) {
+        String updateSQL = "UPDATE channel_blocks SET is_active = FALSE WHERE player_uuid = ? AND channel_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, channelName);
+            int rowsAffected = stmt.executeUpdate();
+            logToConsole("Unblocked user " + playerUuid + " from channel " + channelName + " (rows affected: " + rowsAffected + ")");
+        } catch (SQLException e) {
+            logToConsole("Error unblocking user from channel: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean isUserBlocked(UUID playerUuid, String channelName) {
+        String selectSQL = "SELECT 1 FROM channel_blocks WHERE player_uuid = ? AND channel_name = ? AND is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, channelName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                boolean isBlocked = rs.next();
+                logToConsole("User " + playerUuid + " blocked from channel " + channelName + ": " + isBlocked);
+                return isBlocked;
+            }
+        } catch (SQLException e) {
+            logToConsole("Error checking if user is blocked from channel: " + e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> getBlockedChannels(UUID playerUuid) {
+        Set<String> blockedChannels = new HashSet<>();
+        String selectSQL = "SELECT channel_name FROM channel_blocks WHERE player_uuid = ? AND is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    blockedChannels.add(rs.getString("channel_name"));
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error getting user blocked channels: " + e.getMessage());
+        }
+        return blockedChannels;
+    }
+
+    @Override
+    public void clearBlocks(UUID playerUuid) {
+        String updateSQL = "UPDATE channel_blocks SET is_active = FALSE WHERE player_uuid = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            int rowsAffected = stmt.executeUpdate();
+            logToConsole("Cleared all blocks for user " + playerUuid + " (rows affected: " + rowsAffected + ")");
+        } catch (SQLException e) {
+            logToConsole("Error clearing all user blocks: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void addMember(UUID playerUuid, String chatName) {
+        String insertSQL = """
+            INSERT INTO chat_memberships (player_uuid, chat_name)
+            VALUES (?, ?)
+            ON DUPLICATE KEY UPDATE is_active = TRUE, joined_at = CURRENT_TIMESTAMP
+            """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error adding user to chat: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void removeMember(UUID playerUuid, String chatName) {
+        String updateSQL = "UPDATE chat_memberships SET is_active = FALSE WHERE player_uuid = ? AND chat_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error removing user from chat: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isMember(UUID playerUuid, String chatName) {
+        String selectSQL = "SELECT 1 FROM chat_memberships WHERE player_uuid = ? AND chat_name = ? AND is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            logToConsole("Error checking user chat membership: " + e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> getUserChats(UUID playerUuid) {
+        Set<String> chats = new HashSet<>();
+        String selectSQL = "SELECT chat_name FROM chat_memberships WHERE player_uuid = ? AND is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    chats.add(rs.getString("chat_name"));
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error getting user chats: " + e.getMessage());
+        }
+        return chats;
+    }
+
+    @Override
+    public Set<UUID> getChatMembers(String chatName) {
+        Set<UUID> members = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(SELECT_CHAT_MEMBERS_SQL)) {
+            stmt.setString(1, chatName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    members.add(UUID.fromString(rs.getString("player_uuid")));
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error getting chat members: " + e.getMessage());
+        }
+        return members;
+    }
+
+    @Override
+    public void setPermission(UUID playerUuid, String chatName, String permissionLevel, UUID grantedBy) {
+        String insertSQL = """
+        INSERT INTO chat_permissions (player_uuid, chat_name, permission_level, granted_by)
+        VALUES (?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE permission_level = ?, granted_at = CURRENT_TIMESTAMP, granted_by = ?
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            stmt.setString(3, permissionLevel);
+            stmt.setString(4, grantedBy != null ? grantedBy.toString() : null);
+            stmt.setString(5, permissionLevel);
+            stmt.setString(6, grantedBy != null ? grantedBy.toString() : null);
+            int rowsAffected = stmt.executeUpdate();
+            logToConsole("Set permission for " + playerUuid + " in " + chatName + " to " + permissionLevel + " (rows affected: " + rowsAffected + ")");
+        } catch (SQLException e) {
+            logToConsole("Error setting chat permission: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void removePermission(UUID playerUuid, String chatName) {
+        String deleteSQL = "DELETE FROM chat_permissions WHERE player_uuid = ? AND chat_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error removing chat permission: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void removeMute(UUID playerUuid, String chatName) {
+        String deleteSQL = "DELETE FROM chat_permissions WHERE player_uuid = ? AND chat_name = ? AND permission_level = 'muted'";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error unmuting player: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String getPermission(UUID playerUuid, String chatName) {
+        String selectSQL = "SELECT permission_level FROM chat_permissions WHERE player_uuid = ? AND chat_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                String permission = rs.next() ? rs.getString("permission_level") : null;
+                if (permission != null) {
+                    logToConsole("Retrieved permission for " + playerUuid + " in " + chatName + ": " + permission);
+                }
+                return permission;
+            }
+        } catch (SQLException e) {
+            logToConsole("Error getting chat permission: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Map<UUID, String> getPermissions(String chatName) {
+        Map<UUID, String> permissions = new HashMap<>();
+        String selectSQL = "SELECT player_uuid, permission_level FROM chat_permissions WHERE chat_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, chatName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = UUID.fromString(rs.getString("player_uuid"));
+                    permissions.put(uuid, rs.getString("permission_level"));
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error getting chat permissions: " + e.getMessage());
+        }
+        return permissions;
+    }
+
+    @Override
+    public void addInvitation(UUID invitedPlayer, String chatName, UUID invitedBy) {
+        String insertSQL = """
+        INSERT INTO chat_invitations (invited_player_uuid, chat_name, invited_by_uuid)
+        VALUES (?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            invited_by_uuid = ?,
+            invited_at = CURRENT_TIMESTAMP,
+            is_active = TRUE
+        """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, invitedPlayer.toString());
+            stmt.setString(2, chatName);
+            stmt.setString(3, invitedBy.toString());
+            stmt.setString(4, invitedBy.toString());
+            stmt.executeUpdate();
+            logToConsole("Added chat invitation for " + invitedPlayer + " to chat " + chatName);
+        } catch (SQLException e) {
+            logToConsole("Error adding chat invitation: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void removeInvitation(UUID playerUuid, String chatName) {
+        String updateSQL = "UPDATE chat_invitations SET is_active = FALSE WHERE invited_player_uuid = ? AND chat_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            int rowsAffected = stmt.executeUpdate();
+            logToConsole("Removed chat invitation for " + playerUuid + " from chat " + chatName + " (rows affected: " + rowsAffected + ")");
+        } catch (SQLException e) {
+            logToConsole("Error removing chat invitation: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean hasInvitation(UUID playerUuid, String chatName) {
+        String selectSQL = "SELECT 1 FROM chat_invitations WHERE invited_player_uuid = ? AND chat_name = ? AND is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, chatName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                boolean hasInvitation = rs.next();
+                logToConsole("Player " + playerUuid + " has invitation to " + chatName + ": " + hasInvitation);
+                return hasInvitation;
+            }
+        } catch (SQLException e) {
+            logToConsole("Error checking chat invitation: " + e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> getInvitations(UUID playerUuid) {
+        Set<String> invitations = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(SELECT_INVITATIONS_SQL)) {
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    invitations.add(rs.getString("chat_name"));
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error getting player invitations: " + e.getMessage());
+        }
+        return invitations;
+    }
+
+    @Override
+    public void clearInvitations(UUID playerUuid) {
+        String updateSQL = "UPDATE chat_invitations SET is_active = FALSE WHERE invited_player_uuid = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            int rowsAffected = stmt.executeUpdate();
+            logToConsole("Cleared all invitations for " + playerUuid + " (rows affected: " + rowsAffected + ")");
+        } catch (SQLException e) {
+            logToConsole("Error clearing player invitations: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void banUser(UUID playerUuid, UUID bannedBy, String reason) {
+        String insertSQL = """
+            INSERT INTO chat_bans (player_uuid, banned_by, reason)
+            VALUES (?, ?, ?)
+            ON DUPLICATE KEY UPDATE is_active = TRUE, banned_at = CURRENT_TIMESTAMP, banned_by = ?, reason = ?
+            """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, bannedBy != null ? bannedBy.toString() : null);
+            stmt.setString(3, reason);
+            stmt.setString(4, bannedBy != null ? bannedBy.toString() : null);
+            stmt.setString(5, reason);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error banning user: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void unbanUser(UUID playerUuid) {
+        String updateSQL = "UPDATE chat_bans SET is_active = FALSE WHERE player_uuid = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error unbanning user: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isBanned(UUID playerUuid) {
+        String selectSQL = "SELECT 1 FROM chat_bans WHERE player_uuid = ? AND is_active = TRUE";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            logToConsole("Error checking user ban status: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int getChannelCount(UUID playerUuid) {
+        String selectSQL = "SELECT channel_count FROM player_channels WHERE player_uuid = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("channel_count");
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error retrieving channel count for player " + playerUuid + ": " + e.getMessage());
+        }
+        return 0;
+    }
+
+    @Override
+    public void incrementChannelCount(UUID playerUuid) {
+        String upsertSQL = """
+            INSERT INTO player_channels (player_uuid, channel_count)
+            VALUES (?, 1)
+            ON DUPLICATE KEY UPDATE channel_count = channel_count + 1
+            """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(upsertSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error incrementing channel count for player " + playerUuid + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void decrementChannelCount(UUID playerUuid) {
+        String updateSQL = """
+            UPDATE player_channels
+            SET channel_count = GREATEST(0, channel_count - 1)
+            WHERE player_uuid = ?
+            """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error decrementing channel count for player " + playerUuid + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void recordChannelCreation(UUID playerUuid, String channelName, String serverName) {
+        String insertSQL = """
+            INSERT INTO channel_ownership (player_uuid, channel_name, server_name)
+            VALUES (?, ?, ?)
+            ON DUPLICATE KEY UPDATE is_active = TRUE, created_at = CURRENT_TIMESTAMP
+            """;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, channelName);
+            stmt.setString(3, serverName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error recording channel creation: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void recordChannelDeletion(UUID playerUuid, String channelName) {
+        String updateSQL = "UPDATE channel_ownership SET is_active = FALSE WHERE player_uuid = ? AND channel_name = ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
+            stmt.setString(1, playerUuid.toString());
+            stmt.setString(2, channelName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logToConsole("Error recording channel deletion: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int streamChatHistory(String chatName, Timestamp beforeTimestamp, long beforeId, int limit, Consumer<StorageManager.ChatMessage> consumer) {
+        int count = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(beforeTimestamp == null ? SELECT_CHAT_HISTORY_SQL : SELECT_CHAT_HISTORY_PAGE_SQL)) {
+            stmt.setFetchSize(Math.max(1, Math.min(limit, HISTORY_FETCH_SIZE)));
+            stmt.setString(1, chatName);
+            if (beforeTimestamp == null) {
+                stmt.setInt(2, limit);
+            } else {
+                stmt.setTimestamp(2, beforeTimestamp);
+                stmt.setTimestamp(3, beforeTimestamp);
+                stmt.setLong(4, beforeId);
+                stmt.setInt(5, limit);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new StorageManager.ChatMessage(
+                            rs.getLong("id"),
+                            rs.getString("sender"),
+                            rs.getString("message"),
+                            rs.getTimestamp("timestamp")
+                    ));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            logToConsole("Error retrieving chat history: " + e.getMessage());
+        }
+
+        return count;
+    }
+}
@@ -6,51 +6,48 @@ import me.kanuunankuulaspluginchat.chatSystem.compatibility.UniversalCompatibili
 import me.kanuunankuulaspluginchat.chatSystem.models.ChatChannel;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
-import java.io.IOException;
-import java.sql.*;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Front of the chat data storage. Picks the ChatStorageBackend from storage.type, answers hot reads
+ * (membership, bans, permissions) from the membership index and ChatStateCache, and writes through to the backend.
+ * Until the backend is ready (the database connects in the background) calls wait for it instead of failing.
+ */
 public class StorageManager {
 
+    // Longer than the log writer takes to store a message unless the database is struggling
+    private static final long ROW_ID_WAIT_MILLIS = 5000;
+
     private final ChatControlPlugin plugin;
-    private final boolean useDatabase;
-    private Connection connection;
-
-    private File channelDataFile;
-    private FileConfiguration channelDataConfig;
-    private final Map<UUID, Integer> channelCountCache = new ConcurrentHashMap<>();
-
-    private String host;
-    private int port;
-    private String database;
-    private String username;
-    private String password;
-
-    private File chatDataFile;
-    private FileConfiguration chatDataConfig;
-    private final Map<UUID, Set<String>> userChatMemberships = new ConcurrentHashMap<>();
-    private final Map<String, Map<UUID, String>> chatPermissions = new ConcurrentHashMap<>();
-    private final Set<UUID> bannedUsers = ConcurrentHashMap.newKeySet();
-    private final Map<String, ChatChannel> channelCache = new ConcurrentHashMap<>();
-    private final Map<String, Set<UUID>> channelBlocks = new ConcurrentHashMap<>();
     private final UniversalCompatibilityManager compatibilityManager;
-    private final Map<UUID, Set<String>> chatInvitations = new ConcurrentHashMap<>();
+    private final ChannelMembershipIndex membershipIndex = new ChannelMembershipIndex();
+    private final ChatStateCache stateCache = new ChatStateCache();
+    private final RecentChatHistory recentHistory;
+    private final CompletableFuture<ChatStorageBackend> ready = new CompletableFuture<>();
+    private volatile ChatStorageBackend backend;
+    private volatile ChatLogWriter chatLogWriter;
+    private volatile ChatEventSync eventSync;
+    private volatile ChatLogRetention logRetention;
 
 
 
     public StorageManager(ChatControlPlugin plugin, LanguageManager languageManager) {
         this.plugin = plugin;
-        this.useDatabase = plugin.getConfig().getString("storage.type", "file").equalsIgnoreCase("mysql");
         this.compatibilityManager = new UniversalCompatibilityManager(plugin, languageManager);
+        this.recentHistory = new RecentChatHistory(plugin.getConfig().getInt("logging.recent-history-size", 100));
 
-        if (useDatabase) {
-            loadDatabaseConfig();
-            initializeDatabase();
+        String storageType = plugin.getConfig().getString("storage.type", "file");
+        if (storageType.equalsIgnoreCase("h2")) {
+            initializeDatabase(true);
+        } else if (storageType.equalsIgnoreCase("mysql")) {
+            initializeDatabase(false);
         } else {
             initializeFileStorage();
             logToConsole("No database detected. Using file-based storage.");
@@ -58,626 +55,230 @@ public class StorageManager {
     }
 
     private void initializeFileStorage() {
-        channelDataFile = new File(plugin.getDataFolder(), "channel_data.yml");
-        if (!channelDataFile.exists()) {
-            try {
-                channelDataFile.createNewFile();
-            } catch (IOException e) {
-                logToConsole("Failed to create channel data file: " + e.getMessage());
-            }
-        }
-        channelDataConfig = YamlConfiguration.loadConfiguration(channelDataFile);
+        FileChatStorageBackend fileBackend = new FileChatStorageBackend(plugin, compatibilityManager);
+        fileBackend.load();
+        activate(fileBackend);
+    }
 
-        chatDataFile = new File(plugin.getDataFolder(), "chats.yml");
-        if (!chatDataFile.exists()) {
+    private void initializeDatabase(boolean embedded) {
+        compatibilityManager.runTaskAsync(() -> {
+            SqlChatStorageBackend sqlBackend = null;
             try {
-                chatDataFile.createNewFile();
-            } catch (IOException e) {
-                logToConsole("Failed to create chat data file: " + e.getMessage());
-            }
-        }
-        chatDataConfig = YamlConfiguration.loadConfiguration(chatDataFile);
+                sqlBackend = embedded
+                        ? SqlChatStorageBackend.openEmbedded(plugin.getConfig(), plugin.getDataFolder())
+                        : SqlChatStorageBackend.connectMySql(plugin.getConfig());
+                sqlBackend.createTables();
+                if (plugin.getConfig().getBoolean("storage.mysql.check-query-plans", true)) {
+                    sqlBackend.checkQueryPlans();
+                }
+                startEventSync(sqlBackend);
+                startLogRetention(sqlBackend);
+                activate(sqlBackend);
 
-        loadChannelDataFromFile();
-        loadChatDataFromFile();
-        loadChannelsFromFile();
-    }
+                logToConsole(embedded ? "Successfully opened the embedded H2 database!" : "Successfully connected to MySQL database!");
 
-    public CompletableFuture<List<ChatChannel>> loadAllChannels() {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                List<ChatChannel> channels = new ArrayList<>();
-                String selectSQL = """
-                SELECT channel_name, channel_prefix, is_private, owner_uuid, description, required_permission 
-                FROM custom_channels 
-                WHERE is_active = TRUE
-                """;
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            String name = rs.getString("channel_name");
-                            String prefix = rs.getString("channel_prefix");
-                            boolean isPrivate = rs.getBoolean("is_private");
-                            UUID owner = UUID.fromString(rs.getString("owner_uuid"));
-                            String description = rs.getString("description");
-                            String requiredPermission = rs.getString("required_permission");
-
-                            ChatChannel channel = new ChatChannel(name, prefix, isPrivate, owner, description, requiredPermission);
-                            channels.add(channel);
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error loading channels from database: " + e.getMessage());
+            } catch (ClassNotFoundException e) {
+                logToConsole(embedded
+                        ? "H2 driver not found! Make sure the server downloads the plugin libraries."
+                        : "MySQL driver not found! Please add mysql-connector-java to your dependencies.");
+                logToConsole("Falling back to file-based storage.");
+                initializeFileStorage();
+            } catch (SQLException | RuntimeException e) {
+                logToConsole((embedded ? "Failed to open the H2 database: " : "Failed to connect to MySQL: ") + e.getMessage());
+                logToConsole("Falling back to file-based storage.");
+                if (sqlBackend != null) {
+                    sqlBackend.close();
                 }
-                return channels;
-            });
-        } else {
-            return CompletableFuture.completedFuture(new ArrayList<>(channelCache.values()));
-        }
+                initializeFileStorage();
+            }
+        });
     }
 
-    private void loadChatDataFromFile() {
-        if (chatDataConfig.getConfigurationSection("memberships") != null) {
-            for (String uuidString : chatDataConfig.getConfigurationSection("memberships").getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidString);
-                    List<String> chats = chatDataConfig.getStringList("memberships." + uuidString);
-                    userChatMemberships.put(uuid, new HashSet<>(chats));
-                } catch (IllegalArgumentException e) {
-                    logToConsole("Invalid UUID in chat memberships: " + uuidString);
-                }
-            }
-        }
+    private void activate(ChatStorageBackend newBackend) {
+        Map<String, Set<UUID>> memberships = newBackend.loadMemberships();
+        membershipIndex.loadAll(memberships);
+        logToConsole("Loaded membership index for " + memberships.size() + " chats.");
 
-        if (chatDataConfig.getConfigurationSection("permissions") != null) {
-            for (String chatName : chatDataConfig.getConfigurationSection("permissions").getKeys(false)) {
-                Map<UUID, String> chatPerms = new HashMap<>();
-                if (chatDataConfig.getConfigurationSection("permissions." + chatName) != null) {
-                    for (String uuidString : chatDataConfig.getConfigurationSection("permissions." + chatName).getKeys(false)) {
-                        try {
-                            UUID uuid = UUID.fromString(uuidString);
-                            String permission = chatDataConfig.getString("permissions." + chatName + "." + uuidString);
-                            chatPerms.put(uuid, permission);
-                        } catch (IllegalArgumentException e) {
-                            logToConsole("Invalid UUID in chat permissions: " + uuidString);
-                        }
-                    }
-                }
-                chatPermissions.put(chatName, chatPerms);
-            }
+        ChatLogSink sink = newBackend.createChatLogSink();
+        if (sink != null && chatLogWriter == null) {
+            startChatLogWriter(sink);
         }
 
-        if (chatDataConfig.isList("banned_users")) {
-            List<String> bannedList = chatDataConfig.getStringList("banned_users");
-            for (String uuidString : bannedList) {
-                try {
-                    bannedUsers.add(UUID.fromString(uuidString));
-                } catch (IllegalArgumentException e) {
-                    logToConsole("Invalid UUID in banned users: " + uuidString);
-                }
-            }
-        }
+        backend = newBackend;
+        ready.complete(newBackend);
     }
 
-
-    private void loadChannelsFromFile() {
-        if (channelDataConfig.getConfigurationSection("custom_channels") != null) {
-            for (String channelName : channelDataConfig.getConfigurationSection("custom_channels").getKeys(false)) {
-                try {
-                    String prefix = channelDataConfig.getString("custom_channels." + channelName + ".prefix");
-                    boolean isPrivate = channelDataConfig.getBoolean("custom_channels." + channelName + ".is_private", false);
-                    String ownerString = channelDataConfig.getString("custom_channels." + channelName + ".owner");
-                    String description = channelDataConfig.getString("custom_channels." + channelName + ".description");
-                    String requiredPermission = channelDataConfig.getString("custom_channels." + channelName + ".required_permission");
-
-                    if (ownerString != null) {
-                        UUID owner = UUID.fromString(ownerString);
-                        ChatChannel channel = new ChatChannel(channelName, prefix, isPrivate, owner, description, requiredPermission);
-                        channelCache.put(channelName, channel);
-                    }
-                } catch (IllegalArgumentException e) {
-                    logToConsole("Invalid data for channel: " + channelName + " - " + e.getMessage());
-                }
-            }
+    private void startEventSync(SqlChatStorageBackend sqlBackend) {
+        FileConfiguration config = plugin.getConfig();
+        if (!config.getBoolean("storage.mysql.sync.enabled", true)) {
+            return;
         }
-    }
 
+        ChatEventSync sync = sqlBackend.createEventSync(getServerName(),
+                config.getLong("storage.mysql.sync.keep-minutes", 60) * 60_000L, this::applyRemoteChange);
+        if (sync == null) {
+            return;
+        }
 
-    private void loadChannelDataFromFile() {
-        if (channelDataConfig.getConfigurationSection("players") != null) {
-            for (String uuidString : channelDataConfig.getConfigurationSection("players").getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidString);
-                    int count = channelDataConfig.getInt("players." + uuidString + ".channel_count", 0);
-                    channelCountCache.put(uuid, count);
-                } catch (IllegalArgumentException e) {
-                    logToConsole("Invalid UUID in channel data file: " + uuidString);
-                }
-            }
+        try {
+            sync.createTable();
+            sync.start(compatibilityManager, Math.max(1, config.getLong("storage.mysql.sync.poll-interval-ms", 1000) / 50));
+            eventSync = sync;
+        } catch (SQLException e) {
+            logToConsole("Failed to start cross-server sync, changes made on other servers will show after a relog: " + e.getMessage());
         }
     }
 
+    private void startLogRetention(SqlChatStorageBackend sqlBackend) {
+        FileConfiguration config = plugin.getConfig();
+        ChatLogRetention retention = sqlBackend.createLogRetention(new File(plugin.getDataFolder(), "logs/archive"),
+                config.getInt("logging.retention.days", 0),
+                config.getInt("logging.retention.max-rows-per-chat", 0),
+                config.getInt("logging.retention.chunk-size", 1000),
+                config.getBoolean("logging.retention.archive", false));
+        if (!retention.isEnabled()) {
+            return;
+        }
 
-    private void loadDatabaseConfig() {
-        this.host = plugin.getConfig().getString("storage.mysql.host", "localhost");
-        this.port = plugin.getConfig().getInt("storage.mysql.port", 3306);
-        this.database = plugin.getConfig().getString("storage.mysql.database", "minecraft");
-        this.username = plugin.getConfig().getString("storage.mysql.username", "root");
-        this.password = plugin.getConfig().getString("storage.mysql.password", "");
+        retention.start(compatibilityManager, Math.max(1, config.getLong("logging.retention.interval-minutes", 60)) * 1200L);
+        logRetention = retention;
     }
 
-    private void initializeDatabase() {
-        compatibilityManager.runTaskAsync(() -> {
-            try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
-
-                String url = "jdbc:mysql://" + host + ":" + port + "/" + database +
-                        "?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
-
-                connection = DriverManager.getConnection(url, username, password);
-
-                createChatTable();
-                createChannelTrackingTables();
-                createChatMembershipTables();
-                createBanTable();
-                createChannelBlockTable();
-                createChatInvitationsTable();
-
-                logToConsole("Successfully connected to MySQL database!");
-
-            } catch (ClassNotFoundException e) {
-                logToConsole("MySQL driver not found! Please add mysql-connector-java to your dependencies.");
-                logToConsole("Falling back to file-based storage.");
-                initializeFileStorage();
-            } catch (SQLException e) {
-                logToConsole("Failed to connect to MySQL: " + e.getMessage());
-                logToConsole("Falling back to file-based storage.");
-                initializeFileStorage();
+    // A change made by another server sharing the database: drop what this server has cached so it is read again
+    private void applyRemoteChange(String type, UUID playerUuid, String chatName) {
+        switch (type) {
+            case ChatEventSync.MEMBER_ADD -> membershipIndex.add(playerUuid, chatName);
+            case ChatEventSync.MEMBER_REMOVE -> membershipIndex.remove(playerUuid, chatName);
+            case ChatEventSync.PLAYER_CHANGED -> {
+                stateCache.evict(playerUuid);
+                if (Bukkit.getPlayer(playerUuid) != null) {
+                    preloadPlayerState(playerUuid);
+                }
             }
-        });
-    }
-
-    private void createChatInvitationsTable() throws SQLException {
-        String createInvitationsSQL = """
-        CREATE TABLE IF NOT EXISTS chat_invitations (
-            id INT AUTO_INCREMENT PRIMARY KEY,
-            invited_player_uuid VARCHAR(36) NOT NULL,
-            chat_name VARCHAR(100) NOT NULL,
-            invited_by_uuid VARCHAR(36) NOT NULL,
-            invited_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-            expires_at TIMESTAMP NULL,
-            is_active BOOLEAN DEFAULT TRUE,
-            UNIQUE KEY unique_invitation (invited_player_uuid, chat_name),
-            INDEX idx_invited_player (invited_player_uuid),
-            INDEX idx_chat_name (chat_name),
-            INDEX idx_invited_by (invited_by_uuid),
-            INDEX idx_is_active (is_active)
-        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-        """;
-
-        try (PreparedStatement stmt = connection.prepareStatement(createInvitationsSQL)) {
-            stmt.executeUpdate();
-            logToConsole("Chat invitations table created/verified successfully.");
+            default -> logToConsole("Unknown chat event type: " + type);
         }
     }
 
-
-    private void createChannelBlockTable() throws SQLException {
-        String createChannelBlockSQL = """
-        CREATE TABLE IF NOT EXISTS channel_blocks (
-            id INT AUTO_INCREMENT PRIMARY KEY,
-            player_uuid VARCHAR(36) NOT NULL,
-            channel_name VARCHAR(100) NOT NULL,
-            blocked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-            blocked_by VARCHAR(36),
-            reason TEXT,
-            is_active BOOLEAN DEFAULT TRUE,
-            UNIQUE KEY unique_block (player_uuid, channel_name),
-            INDEX idx_player_uuid (player_uuid),
-            INDEX idx_channel_name (channel_name),
-            INDEX idx_is_active (is_active)
-        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-        """;
-
-        try (PreparedStatement stmt = connection.prepareStatement(createChannelBlockSQL)) {
-            stmt.executeUpdate();
-            logToConsole("Channel blocks table created/verified successfully.");
+    // Runs inside the backend write, so other servers only hear about changes that are already in the database
+    private void publishChange(String type, UUID playerUuid, String chatName) {
+        ChatEventSync sync = eventSync;
+        if (sync != null) {
+            sync.publish(type, playerUuid, chatName);
         }
     }
 
-    private void createChatMembershipTables() throws SQLException {
-        String createMembershipsSQL = """
-            CREATE TABLE IF NOT EXISTS chat_memberships (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                player_uuid VARCHAR(36) NOT NULL,
-                chat_name VARCHAR(100) NOT NULL,
-                joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                is_active BOOLEAN DEFAULT TRUE,
-                UNIQUE KEY unique_membership (player_uuid, chat_name),
-                INDEX idx_player_uuid (player_uuid),
-                INDEX idx_chat_name (chat_name)
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
-        String createPermissionsSQL = """
-            CREATE TABLE IF NOT EXISTS chat_permissions (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                player_uuid VARCHAR(36) NOT NULL,
-                chat_name VARCHAR(100) NOT NULL,
-                permission_level VARCHAR(50) NOT NULL,
-                granted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                granted_by VARCHAR(36),
-                UNIQUE KEY unique_permission (player_uuid, chat_name),
-                INDEX idx_player_uuid (player_uuid),
-                INDEX idx_chat_name (chat_name),
-                INDEX idx_permission_level (permission_level)
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
-        try (PreparedStatement stmt1 = connection.prepareStatement(createMembershipsSQL);
-             PreparedStatement stmt2 = connection.prepareStatement(createPermissionsSQL)) {
-
-            stmt1.executeUpdate();
-            stmt2.executeUpdate();
-            logToConsole("Chat membership and permission tables created/verified successfully.");
+    // Reads from a memory backend are answered right away, everything else runs off the main thread once the backend is ready
+    private <T> CompletableFuture<T> query(Function<ChatStorageBackend, T> query) {
+        ChatStorageBackend current = backend;
+        if (current != null && current.readsFromMemory()) {
+            return CompletableFuture.completedFuture(query.apply(current));
         }
+        return ready.thenCompose(b -> compatibilityManager.supplyAsync(() -> query.apply(b)));
     }
 
-    private void createChannelStorageTable() throws SQLException {
-        String createChannelSQL = """
-        CREATE TABLE IF NOT EXISTS custom_channels (
-            id INT AUTO_INCREMENT PRIMARY KEY,
-            channel_name VARCHAR(100) NOT NULL UNIQUE,
-            channel_prefix VARCHAR(10),
-            is_private BOOLEAN DEFAULT FALSE,
-            owner_uuid VARCHAR(36) NOT NULL,
-            description TEXT,
-            required_permission VARCHAR(100),
-            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-            is_active BOOLEAN DEFAULT TRUE,
-            INDEX idx_channel_name (channel_name),
-            INDEX idx_owner_uuid (owner_uuid),
-            INDEX idx_is_active (is_active)
-        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-        """;
-
-        try (PreparedStatement stmt = connection.prepareStatement(createChannelSQL)) {
-            stmt.executeUpdate();
-            logToConsole("Custom channels table created/verified successfully.");
-        }
+    private CompletableFuture<Void> update(Consumer<ChatStorageBackend> update) {
+        return ready.thenCompose(b -> compatibilityManager.runAsync(() -> update.accept(b)));
     }
 
+    // Memory backends already hold everything, so ban and permission state is only cached in front of the others
+    private boolean cachesState() {
+        ChatStorageBackend current = backend;
+        return current == null || !current.readsFromMemory();
+    }
 
-    private void createBanTable() throws SQLException {
-        String createBanSQL = """
-            CREATE TABLE IF NOT EXISTS chat_bans (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                player_uuid VARCHAR(36) NOT NULL UNIQUE,
-                banned_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                banned_by VARCHAR(36),
-                reason TEXT,
-                is_active BOOLEAN DEFAULT TRUE,
-                INDEX idx_player_uuid (player_uuid),
-                INDEX idx_is_active (is_active)
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
-        try (PreparedStatement stmt = connection.prepareStatement(createBanSQL)) {
-            stmt.executeUpdate();
-            logToConsole("Chat ban table created/verified successfully.");
-        }
+    public CompletableFuture<List<ChatChannel>> loadAllChannels() {
+        return query(ChatStorageBackend::loadChannels);
     }
 
+    /**
+     * Loads everything the chat path checks for a player (ban, permissions, blocks, invites) in one go,
+     * so nothing they do while online waits on the database. Blocks, so call it off the main thread.
+     * Kept until evictPlayerState.
+     */
+    public void preloadPlayerState(UUID playerUuid) {
+        if (!cachesState() || stateCache.isLoaded(playerUuid)) {
+            return;
+        }
 
-    private void createChatTable() throws SQLException {
-        String createTableSQL = """
-            CREATE TABLE IF NOT EXISTS chat_logs (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                chat_name VARCHAR(100) NOT NULL,
-                sender VARCHAR(50) NOT NULL,
-                message TEXT NOT NULL,
-                timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                server_name VARCHAR(50),
-                INDEX idx_chat_name (chat_name),
-                INDEX idx_sender (sender),
-                INDEX idx_timestamp (timestamp)
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
-        try (PreparedStatement stmt = connection.prepareStatement(createTableSQL)) {
-            stmt.executeUpdate();
-            logToConsole("Chat logs table created/verified successfully.");
+        ChatStorageBackend current = ready.getNow(null);
+        if (current == null || current.readsFromMemory()) {
+            return;
         }
-    }
 
-    private void createChannelTrackingTables() throws SQLException {
-        String createPlayerChannelsSQL = """
-            CREATE TABLE IF NOT EXISTS player_channels (
-                player_uuid VARCHAR(36) PRIMARY KEY,
-                channel_count INT DEFAULT 0,
-                last_updated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
-        String createChannelOwnershipSQL = """
-            CREATE TABLE IF NOT EXISTS channel_ownership (
-                id INT AUTO_INCREMENT PRIMARY KEY,
-                player_uuid VARCHAR(36) NOT NULL,
-                channel_name VARCHAR(100) NOT NULL,
-                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                is_active BOOLEAN DEFAULT TRUE,
-                server_name VARCHAR(50),
-                UNIQUE KEY unique_player_channel (player_uuid, channel_name),
-                INDEX idx_player_uuid (player_uuid),
-                INDEX idx_channel_name (channel_name),
-                INDEX idx_is_active (is_active)
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
-        try (PreparedStatement stmt1 = connection.prepareStatement(createPlayerChannelsSQL);
-             PreparedStatement stmt2 = connection.prepareStatement(createChannelOwnershipSQL)) {
-
-            stmt1.executeUpdate();
-            stmt2.executeUpdate();
-            logToConsole("Channel tracking tables created/verified successfully.");
+        ChatStateCache.PendingLoad load = stateCache.beginLoad(playerUuid);
+        try {
+            stateCache.loadPlayer(playerUuid, load, current.loadPlayerState(playerUuid));
+        } catch (RuntimeException e) {
+            stateCache.cancelLoad(playerUuid, load);
+            // Already logged by the backend, lookups for this player fall back to single queries
         }
     }
 
     public CompletableFuture<Void> blockUserFromChannel(UUID playerUuid, String channelName, UUID blockedBy, String reason) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String insertSQL = """
-                INSERT INTO channel_blocks (player_uuid, channel_name, blocked_by, reason) 
-                VALUES (?, ?, ?, ?) 
-                ON DUPLICATE KEY UPDATE is_active = TRUE, blocked_at = CURRENT_TIMESTAMP, blocked_by = ?, reason = ?
-                """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, channelName);
-                    stmt.setString(3, blockedBy != null ? blockedBy.toString() : null);
-                    stmt.setString(4, reason);
-                    stmt.setString(5, blockedBy != null ? blockedBy.toString() : null);
-                    stmt.setString(6, reason);
-                    stmt.executeUpdate();
-                    logToConsole("Blocked user " + playerUuid + " from channel " + channelName);
-                } catch (SQLException e) {
-                    logToConsole("Error blocking user from channel: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                channelBlocks.computeIfAbsent(channelName, k -> ConcurrentHashMap.newKeySet()).add(playerUuid);
-                saveChannelDataToFile();
-                logToConsole("Blocked user " + playerUuid + " from channel " + channelName);
-            });
-        }
+        stateCache.putBlock(playerUuid, channelName, true);
+        return update(b -> {
+            b.blockUser(playerUuid, channelName, blockedBy, reason);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, channelName);
+        });
     }
 
     public CompletableFuture<Void> unblockUserFromChannel(UUID playerUuid, String channelName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE channel_blocks SET is_active = FALSE WHERE player_uuid = ? AND channel_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, channelName);
-                    int rowsAffected = stmt.executeUpdate();
-                    logToConsole("Unblocked user " + playerUuid + " from channel " + channelName + " (rows affected: " + rowsAffected + ")");
-                } catch (SQLException e) {
-                    logToConsole("Error unblocking user from channel: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                Set<UUID> blockedUsers = channelBlocks.get(channelName);
-                if (blockedUsers != null) {
-                    boolean removed = blockedUsers.remove(playerUuid);
-                    if (removed) {
-                        saveChannelDataToFile();
-                        logToConsole("Unblocked user " + playerUuid + " from channel " + channelName);
-                    } else {
-                        logToConsole("User " + playerUuid + " was not blocked from channel " + channelName);
-                    }
-                }
-            });
-        }
+        stateCache.putBlock(playerUuid, channelName, false);
+        return update(b -> {
+            b.unblockUser(playerUuid, channelName);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, channelName);
+        });
     }
 
     public CompletableFuture<Boolean> isUserBlockedFromChannel(UUID playerUuid, String channelName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                String selectSQL = "SELECT 1 FROM channel_blocks WHERE player_uuid = ? AND channel_name = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, channelName);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        boolean isBlocked = rs.next();
-                        logToConsole("User " + playerUuid + " blocked from channel " + channelName + ": " + isBlocked);
-                        return isBlocked;
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error checking if user is blocked from channel: " + e.getMessage());
-                }
-                return false;
-            });
-        } else {
-            boolean isBlocked = channelBlocks.getOrDefault(channelName, new HashSet<>()).contains(playerUuid);
-            return CompletableFuture.completedFuture(isBlocked);
+        Set<String> cached = stateCache.getBlockedChannels(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.contains(channelName));
         }
+        return query(b -> b.isUserBlocked(playerUuid, channelName));
     }
 
     public CompletableFuture<Set<String>> getUserBlockedChannels(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                Set<String> blockedChannels = new HashSet<>();
-                String selectSQL = "SELECT channel_name FROM channel_blocks WHERE player_uuid = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            blockedChannels.add(rs.getString("channel_name"));
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error getting user blocked channels: " + e.getMessage());
-                }
-                return blockedChannels;
-            });
-        } else {
-            return compatibilityManager.supplyAsync(() -> {
-                Set<String> blockedChannels = new HashSet<>();
-                for (Map.Entry<String, Set<UUID>> entry : channelBlocks.entrySet()) {
-                    if (entry.getValue().contains(playerUuid)) {
-                        blockedChannels.add(entry.getKey());
-                    }
-                }
-                return blockedChannels;
-            });
+        Set<String> cached = stateCache.getBlockedChannels(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        return query(b -> b.getBlockedChannels(playerUuid));
     }
 
     public CompletableFuture<Void> clearAllUserBlocks(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE channel_blocks SET is_active = FALSE WHERE player_uuid = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    int rowsAffected = stmt.executeUpdate();
-                    logToConsole("Cleared all blocks for user " + playerUuid + " (rows affected: " + rowsAffected + ")");
-                } catch (SQLException e) {
-                    logToConsole("Error clearing all user blocks: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                boolean changed = false;
-                for (Set<UUID> blockedUsers : channelBlocks.values()) {
-                    if (blockedUsers.remove(playerUuid)) {
-                        changed = true;
-                    }
-                }
-                if (changed) {
-                    saveChannelDataToFile();
-                    logToConsole("Cleared all blocks for user " + playerUuid);
-                }
-            });
-        }
-    }
-
-    private void loadChannelBlocksFromFile() {
-        if (channelDataConfig.getConfigurationSection("channel_blocks") != null) {
-            for (String channelName : channelDataConfig.getConfigurationSection("channel_blocks").getKeys(false)) {
-                List<String> blockedList = channelDataConfig.getStringList("channel_blocks." + channelName);
-                Set<UUID> blockedUsers = new HashSet<>();
-                for (String uuidString : blockedList) {
-                    try {
-                        blockedUsers.add(UUID.fromString(uuidString));
-                    } catch (IllegalArgumentException e) {
-                        logToConsole("Invalid UUID in channel blocks: " + uuidString);
-                    }
-                }
-                if (!blockedUsers.isEmpty()) {
-                    channelBlocks.put(channelName, blockedUsers);
-                }
-            }
-        }
+        stateCache.clearBlocks(playerUuid);
+        return update(b -> {
+            b.clearBlocks(playerUuid);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, null);
+        });
     }
 
-
     public CompletableFuture<Void> addUserToChat(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String insertSQL = """
-                    INSERT INTO chat_memberships (player_uuid, chat_name) 
-                    VALUES (?, ?) 
-                    ON DUPLICATE KEY UPDATE is_active = TRUE, joined_at = CURRENT_TIMESTAMP
-                    """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error adding user to chat: " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                userChatMemberships.computeIfAbsent(playerUuid, k -> new HashSet<>()).add(chatName);
-                saveChatDataToFile();
-            });
-        }
+        membershipIndex.add(playerUuid, chatName);
+        return update(b -> {
+            b.addMember(playerUuid, chatName);
+            publishChange(ChatEventSync.MEMBER_ADD, playerUuid, chatName);
+        });
     }
 
     public CompletableFuture<Void> removeUserFromChat(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE chat_memberships SET is_active = FALSE WHERE player_uuid = ? AND chat_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error removing user from chat: " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                Set<String> chats = userChatMemberships.get(playerUuid);
-                if (chats != null) {
-                    chats.remove(chatName);
-                }
-                saveChatDataToFile();
-            });
-        }
+        membershipIndex.remove(playerUuid, chatName);
+        return update(b -> {
+            b.removeMember(playerUuid, chatName);
+            publishChange(ChatEventSync.MEMBER_REMOVE, playerUuid, chatName);
+        });
     }
 
     public CompletableFuture<Boolean> isUserInChat(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                String selectSQL = "SELECT 1 FROM chat_memberships WHERE player_uuid = ? AND chat_name = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        boolean inChat = rs.next();
-                        logToConsole("User " + playerUuid + " in chat " + chatName + ": " + inChat);
-                        return inChat;
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error checking user chat membership: " + e.getMessage());
-                }
-                return false;
-            });
-        } else {
-            boolean inChat = userChatMemberships.getOrDefault(playerUuid, new HashSet<>()).contains(chatName);
-            return CompletableFuture.completedFuture(inChat);
+        if (membershipIndex.isLoaded()) {
+            return CompletableFuture.completedFuture(membershipIndex.contains(playerUuid, chatName));
         }
+        return query(b -> b.isMember(playerUuid, chatName));
     }
 
     public CompletableFuture<Set<String>> getUserChats(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                Set<String> chats = new HashSet<>();
-                String selectSQL = "SELECT chat_name FROM chat_memberships WHERE player_uuid = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            chats.add(rs.getString("chat_name"));
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error getting user chats: " + e.getMessage());
-                }
-                return chats;
-            });
-        } else {
-            return CompletableFuture.completedFuture(
-                    new HashSet<>(userChatMemberships.getOrDefault(playerUuid, new HashSet<>()))
-            );
-        }
+        return query(b -> b.getUserChats(playerUuid));
     }
 
     public CompletableFuture<Void> setChatPermission(UUID playerUuid, String chatName, String permissionLevel, UUID grantedBy) {
@@ -685,34 +286,13 @@ public class StorageManager {
             return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid permission level: " + permissionLevel));
         }
 
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String insertSQL = """
-            INSERT INTO chat_permissions (player_uuid, chat_name, permission_level, granted_by) 
-            VALUES (?, ?, ?, ?) 
-            ON DUPLICATE KEY UPDATE permission_level = ?, granted_at = CURRENT_TIMESTAMP, granted_by = ?
-            """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    stmt.setString(3, permissionLevel);
-                    stmt.setString(4, grantedBy != null ? grantedBy.toString() : null);
-                    stmt.setString(5, permissionLevel);
-                    stmt.setString(6, grantedBy != null ? grantedBy.toString() : null);
-                    int rowsAffected = stmt.executeUpdate();
-                    logToConsole("Set permission for " + playerUuid + " in " + chatName + " to " + permissionLevel + " (rows affected: " + rowsAffected + ")");
-                } catch (SQLException e) {
-                    logToConsole("Error setting chat permission: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                chatPermissions.computeIfAbsent(chatName, k -> new HashMap<>()).put(playerUuid, permissionLevel);
-                saveChatDataToFile();
-                logToConsole("Set permission for " + playerUuid + " in " + chatName + " to " + permissionLevel);
-            });
+        if (cachesState()) {
+            stateCache.putPermission(playerUuid, chatName, permissionLevel);
         }
+        return update(b -> {
+            b.setPermission(playerUuid, chatName, permissionLevel, grantedBy);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, chatName);
+        });
     }
 
     private boolean isValidPermissionLevel(String permissionLevel) {
@@ -727,577 +307,211 @@ public class StorageManager {
 
 
     public CompletableFuture<Void> unmutePlayer(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String deleteSQL = "DELETE FROM chat_permissions WHERE player_uuid = ? AND chat_name = ? AND permission_level = 'muted'";
-                try (PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error unmuting player: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                try {
-                    Map<UUID, String> chatPerms = chatPermissions.computeIfAbsent(chatName, k -> new HashMap<>());
-
-                    String currentPermission = chatPerms.get(playerUuid);
-
-                    if ("muted".equals(currentPermission)) {
-                        String removedPermission = chatPerms.remove(playerUuid);
-                        logToConsole("Removed mute permission for player " + playerUuid + " from chat " + chatName +
-                                " (removed: " + removedPermission + ")");
-
-                        saveChatDataToFile();
-
-                        verifyUnmuteInFile(playerUuid, chatName);
-                    } else {
-                        logToConsole("Player " + playerUuid + " was not muted in chat " + chatName +
-                                " (current permission: " + currentPermission + ")");
-                    }
-                } catch (Exception e) {
-                    logToConsole("Error in unmute operation: " + e.getMessage());
-                    e.printStackTrace();
-                    throw new RuntimeException(e);
-                }
-            });
-        }
-    }
-
-    private void verifyUnmuteInFile(UUID playerUuid, String chatName) {
-        try {
-            // Mitä Vittua.
-            String memoryPermission = chatPermissions.getOrDefault(chatName, new HashMap<>()).get(playerUuid);
-
-            FileConfiguration tempConfig = YamlConfiguration.loadConfiguration(chatDataFile);
-            String filePermission = tempConfig.getString("permissions." + chatName + "." + playerUuid.toString());
-
-            if (memoryPermission == null && filePermission == null) {
-            } else {
-                logToConsole("VERIFICATION FAILED: Player " + playerUuid + " still has permission - Memory: " +
-                        memoryPermission + ", File: " + filePermission);
+        // Cleared even when the mute is not cached yet, so a player load still in flight cannot put it back
+        if (cachesState()) {
+            String cached = stateCache.getPermission(playerUuid, chatName);
+            if (cached == null || cached.equals("muted")) {
+                stateCache.putPermission(playerUuid, chatName, null);
             }
-        } catch (Exception e) {
-            logToConsole("Error verifying unmute: " + e.getMessage());
-            e.printStackTrace();
         }
+        return update(b -> {
+            b.removeMute(playerUuid, chatName);
+            if (!b.readsFromMemory()) {
+                // Only a mute is removed, so take whatever level is left from the database unless it changed since
+                stateCache.replacePermission(playerUuid, chatName, null, b.getPermission(playerUuid, chatName));
+            }
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, chatName);
+        });
     }
 
-    public CompletableFuture<Void> addChatInvitation(UUID invitedPlayer, String chatName, UUID invitedBy) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String insertSQL = """
-                INSERT INTO chat_invitations (invited_player_uuid, chat_name, invited_by_uuid) 
-                VALUES (?, ?, ?) 
-                ON DUPLICATE KEY UPDATE 
-                    invited_by_uuid = ?, 
-                    invited_at = CURRENT_TIMESTAMP, 
-                    is_active = TRUE
-                """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, invitedPlayer.toString());
-                    stmt.setString(2, chatName);
-                    stmt.setString(3, invitedBy.toString());
-                    stmt.setString(4, invitedBy.toString());
-                    stmt.executeUpdate();
-                    logToConsole("Added chat invitation for " + invitedPlayer + " to chat " + chatName);
-                } catch (SQLException e) {
-                    logToConsole("Error adding chat invitation: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                chatInvitations.computeIfAbsent(invitedPlayer, k -> ConcurrentHashMap.newKeySet()).add(chatName);
-                saveChatDataToFile();
-                logToConsole("Added chat invitation for " + invitedPlayer + " to chat " + chatName);
-            });
+    public CompletableFuture<Void> removeChatPermission(UUID playerUuid, String chatName) {
+        if (cachesState()) {
+            stateCache.putPermission(playerUuid, chatName, null);
         }
+        return update(b -> {
+            b.removePermission(playerUuid, chatName);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, chatName);
+        });
     }
 
-
-    private void saveChannelDataToFile() {
-        for (Map.Entry<UUID, Integer> entry : channelCountCache.entrySet()) {
-            channelDataConfig.set("players." + entry.getKey().toString() + ".channel_count", entry.getValue());
-        }
-        channelDataConfig.set("channel_blocks", null);
-        for (Map.Entry<String, Set<UUID>> entry : channelBlocks.entrySet()) {
-            String channelName = entry.getKey();
-            List<String> blockedList = new ArrayList<>();
-            for (UUID uuid : entry.getValue()) {
-                blockedList.add(uuid.toString());
-            }
-            if (!blockedList.isEmpty()) {
-                channelDataConfig.set("channel_blocks." + channelName, blockedList);
-            }
-        }
-
-        try {
-            channelDataConfig.save(channelDataFile);
-            logToConsole("Channel data with blocks successfully saved to file");
-        } catch (IOException e) {
-            logToConsole("Failed to save channel data to file: " + e.getMessage());
+    public CompletableFuture<String> getChatPermission(UUID playerUuid, String chatName) {
+        if (cachesState() && stateCache.hasPermissionEntry(playerUuid, chatName)) {
+            return CompletableFuture.completedFuture(stateCache.getPermission(playerUuid, chatName));
         }
-    }
 
-    private void saveChannelsToFile() {
-        try {
-            channelDataConfig.set("custom_channels", null);
-
-            for (ChatChannel channel : channelCache.values()) {
-                String path = "custom_channels." + channel.getName();
-                channelDataConfig.set(path + ".prefix", channel.getPrefix());
-                channelDataConfig.set(path + ".is_private", channel.isPrivate());
-                channelDataConfig.set(path + ".owner", channel.getOwner().toString());
-                channelDataConfig.set(path + ".description", channel.getDescription());
-                channelDataConfig.set(path + ".required_permission", channel.getRequiredPermission());
+        long stamp = stateCache.readStamp();
+        return query(b -> {
+            String permission = b.getPermission(playerUuid, chatName);
+            if (!b.readsFromMemory()) {
+                stateCache.fillPermission(playerUuid, chatName, permission, stamp);
             }
-
-            channelDataConfig.save(channelDataFile);
-            logToConsole("Custom channels successfully saved to file");
-
-        } catch (IOException e) {
-            logToConsole("Failed to save custom channels to file: " + e.getMessage());
-            e.printStackTrace();
-        }
+            return permission;
+        }).exceptionally(e -> null);
     }
 
-    public CompletableFuture<Void> saveChannel(ChatChannel channel) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String insertSQL = """
-                INSERT INTO custom_channels (channel_name, channel_prefix, is_private, owner_uuid, description, required_permission) 
-                VALUES (?, ?, ?, ?, ?, ?) 
-                ON DUPLICATE KEY UPDATE 
-                    channel_prefix = ?, 
-                    is_private = ?, 
-                    description = ?, 
-                    required_permission = ?,
-                    is_active = TRUE
-                """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, channel.getName());
-                    stmt.setString(2, channel.getPrefix());
-                    stmt.setBoolean(3, channel.isPrivate());
-                    stmt.setString(4, channel.getOwner().toString());
-                    stmt.setString(5, channel.getDescription());
-                    stmt.setString(6, channel.getRequiredPermission());
-                    stmt.setString(7, channel.getPrefix());
-                    stmt.setBoolean(8, channel.isPrivate());
-                    stmt.setString(9, channel.getDescription());
-                    stmt.setString(10, channel.getRequiredPermission());
-
-                    stmt.executeUpdate();
-                    logToConsole("Saved channel: " + channel.getName());
-                } catch (SQLException e) {
-                    logToConsole("Error saving channel: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                channelCache.put(channel.getName(), channel);
-                saveChannelsToFile();
-                logToConsole("Saved channel to file: " + channel.getName());
-            });
-        }
+    public CompletableFuture<Map<UUID, String>> getChatPermissions(String chatName) {
+        return query(b -> b.getPermissions(chatName));
     }
 
-    private void saveChatDataToFile() {
-        try {
-            chatDataConfig.set("permissions", null);
-
-            for (Map.Entry<UUID, Set<String>> entry : userChatMemberships.entrySet()) {
-                chatDataConfig.set("memberships." + entry.getKey().toString(), new ArrayList<>(entry.getValue()));
-            }
-
-            for (Map.Entry<String, Map<UUID, String>> chatEntry : chatPermissions.entrySet()) {
-                String chatName = chatEntry.getKey();
-                for (Map.Entry<UUID, String> permEntry : chatEntry.getValue().entrySet()) {
-                    String permission = permEntry.getValue();
-                    if (permission != null && !permission.trim().isEmpty()) {
-                        chatDataConfig.set("permissions." + chatName + "." + permEntry.getKey().toString(), permission);
-                    }
-                }
-            }
-
-            for (Map.Entry<UUID, Set<String>> entry : chatInvitations.entrySet()) {
-                if (!entry.getValue().isEmpty()) {
-                    chatDataConfig.set("invitations." + entry.getKey().toString(), new ArrayList<>(entry.getValue()));
-                }
-            }
-
-
-            List<String> bannedList = new ArrayList<>();
-            for (UUID uuid : bannedUsers) {
-                bannedList.add(uuid.toString());
-            }
-            chatDataConfig.set("banned_users", bannedList);
+    public CompletableFuture<Void> addChatInvitation(UUID invitedPlayer, String chatName, UUID invitedBy) {
+        stateCache.putInvitation(invitedPlayer, chatName, true);
+        return update(b -> {
+            b.addInvitation(invitedPlayer, chatName, invitedBy);
+            publishChange(ChatEventSync.PLAYER_CHANGED, invitedPlayer, chatName);
+        });
+    }
 
-            chatDataConfig.save(chatDataFile);
-            logToConsole("Chat data successfully saved to file");
+    public CompletableFuture<Void> removeInvitation(UUID playerUuid, String chatName) {
+        stateCache.putInvitation(playerUuid, chatName, false);
+        return update(b -> {
+            b.removeInvitation(playerUuid, chatName);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, chatName);
+        });
+    }
 
-        } catch (IOException e) {
-            logToConsole("Failed to save chat data to file: " + e.getMessage());
-            e.printStackTrace();
+    public CompletableFuture<Boolean> hasInvitation(UUID playerUuid, String chatName) {
+        Set<String> cached = stateCache.getInvitations(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.contains(chatName));
         }
+        return query(b -> b.hasInvitation(playerUuid, chatName));
     }
 
-    public CompletableFuture<Void> removeInvitation(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE chat_invitations SET is_active = FALSE WHERE invited_player_uuid = ? AND chat_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    int rowsAffected = stmt.executeUpdate();
-                    logToConsole("Removed chat invitation for " + playerUuid + " from chat " + chatName + " (rows affected: " + rowsAffected + ")");
-                } catch (SQLException e) {
-                    logToConsole("Error removing chat invitation: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                Set<String> invitations = chatInvitations.get(playerUuid);
-                if (invitations != null) {
-                    boolean removed = invitations.remove(chatName);
-                    if (removed) {
-                        saveChatDataToFile();
-                        logToConsole("Removed chat invitation for " + playerUuid + " from chat " + chatName);
-                    }
-                }
-            });
+    public CompletableFuture<Set<String>> getPlayerInvitations(UUID playerUuid) {
+        Set<String> cached = stateCache.getInvitations(playerUuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        return query(b -> b.getInvitations(playerUuid));
     }
 
+    public CompletableFuture<Void> clearPlayerInvitations(UUID playerUuid) {
+        stateCache.clearInvitations(playerUuid);
+        return update(b -> {
+            b.clearInvitations(playerUuid);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, null);
+        });
+    }
 
-    public CompletableFuture<String> getChatPermission(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                String selectSQL = "SELECT permission_level FROM chat_permissions WHERE player_uuid = ? AND chat_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        if (rs.next()) {
-                            String permission = rs.getString("permission_level");
-                            logToConsole("Retrieved permission for " + playerUuid + " in " + chatName + ": " + permission);
-                            return permission;
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error getting chat permission: " + e.getMessage());
-                }
-                return null;
-            });
-        } else {
-            return CompletableFuture.completedFuture(
-                    chatPermissions.getOrDefault(chatName, new HashMap<>()).get(playerUuid)
-            );
+    public CompletableFuture<Void> banUser(UUID playerUuid, UUID bannedBy, String reason) {
+        if (cachesState()) {
+            stateCache.putBan(playerUuid, true);
         }
+        return update(b -> {
+            b.banUser(playerUuid, bannedBy, reason);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, null);
+        });
     }
 
-    public CompletableFuture<Void> banUser(UUID playerUuid, UUID bannedBy, String reason) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String insertSQL = """
-                    INSERT INTO chat_bans (player_uuid, banned_by, reason) 
-                    VALUES (?, ?, ?) 
-                    ON DUPLICATE KEY UPDATE is_active = TRUE, banned_at = CURRENT_TIMESTAMP, banned_by = ?, reason = ?
-                    """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, bannedBy != null ? bannedBy.toString() : null);
-                    stmt.setString(3, reason);
-                    stmt.setString(4, bannedBy != null ? bannedBy.toString() : null);
-                    stmt.setString(5, reason);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error banning user: " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                bannedUsers.add(playerUuid);
-                saveChatDataToFile();
-            });
+    public CompletableFuture<Void> unbanUser(UUID playerUuid) {
+        if (cachesState()) {
+            stateCache.putBan(playerUuid, false);
         }
+        return update(b -> {
+            b.unbanUser(playerUuid);
+            publishChange(ChatEventSync.PLAYER_CHANGED, playerUuid, null);
+        });
     }
 
-    public CompletableFuture<Boolean> hasInvitation(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                String selectSQL = "SELECT 1 FROM chat_invitations WHERE invited_player_uuid = ? AND chat_name = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        boolean hasInvitation = rs.next();
-                        logToConsole("Player " + playerUuid + " has invitation to " + chatName + ": " + hasInvitation);
-                        return hasInvitation;
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error checking chat invitation: " + e.getMessage());
-                }
-                return false;
-            });
-        } else {
-            boolean hasInvitation = chatInvitations.getOrDefault(playerUuid, new HashSet<>()).contains(chatName);
-            return CompletableFuture.completedFuture(hasInvitation);
+    public CompletableFuture<Boolean> isUserBanned(UUID playerUuid) {
+        if (cachesState()) {
+            Boolean cached = stateCache.getBan(playerUuid);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
         }
+
+        long stamp = stateCache.readStamp();
+        return query(b -> {
+            boolean banned = b.isBanned(playerUuid);
+            if (!b.readsFromMemory()) {
+                stateCache.fillBan(playerUuid, banned, stamp);
+            }
+            return banned;
+        }).exceptionally(e -> false);
     }
 
+    public CompletableFuture<Void> saveChannel(ChatChannel channel) {
+        return update(b -> b.saveChannel(channel));
+    }
 
-    public CompletableFuture<Void> unbanUser(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE chat_bans SET is_active = FALSE WHERE player_uuid = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error unbanning user: " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                bannedUsers.remove(playerUuid);
-                saveChatDataToFile();
-            });
-        }
+    public CompletableFuture<Void> deleteChannel(String channelName) {
+        recentHistory.remove(channelName);
+        return update(b -> b.deleteChannel(channelName));
     }
 
-    public CompletableFuture<Boolean> isUserBanned(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                String selectSQL = "SELECT 1 FROM chat_bans WHERE player_uuid = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        return rs.next();
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error checking user ban status: " + e.getMessage());
-                }
-                return false;
-            });
-        } else {
-            return CompletableFuture.completedFuture(bannedUsers.contains(playerUuid));
-        }
+    public boolean isUsingFileStorage() {
+        return backend instanceof FileChatStorageBackend;
     }
 
-    public CompletableFuture<Set<String>> getPlayerInvitations(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                Set<String> invitations = new HashSet<>();
-                String selectSQL = "SELECT chat_name FROM chat_invitations WHERE invited_player_uuid = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            invitations.add(rs.getString("chat_name"));
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error getting player invitations: " + e.getMessage());
-                }
-                return invitations;
-            });
-        } else {
-            return CompletableFuture.completedFuture(
-                    new HashSet<>(chatInvitations.getOrDefault(playerUuid, new HashSet<>()))
-            );
+    public CompletableFuture<Boolean> exportChatDataToYaml() {
+        if (!(backend instanceof FileChatStorageBackend fileBackend)) {
+            return CompletableFuture.completedFuture(false);
         }
+        return compatibilityManager.supplyAsync(fileBackend::exportChatDataToYaml);
     }
-    public CompletableFuture<Void> clearPlayerInvitations(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE chat_invitations SET is_active = FALSE WHERE invited_player_uuid = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    int rowsAffected = stmt.executeUpdate();
-                    logToConsole("Cleared all invitations for " + playerUuid + " (rows affected: " + rowsAffected + ")");
-                } catch (SQLException e) {
-                    logToConsole("Error clearing player invitations: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                Set<String> removed = chatInvitations.remove(playerUuid);
-                if (removed != null && !removed.isEmpty()) {
-                    saveChatDataToFile();
-                    logToConsole("Cleared all invitations for " + playerUuid);
-                }
-            });
+
+    public CompletableFuture<Boolean> importChatDataFromYaml() {
+        if (!(backend instanceof FileChatStorageBackend fileBackend)) {
+            return CompletableFuture.completedFuture(false);
         }
-    }
 
-    private void loadChatInvitationsFromFile() {
-        if (chatDataConfig.getConfigurationSection("invitations") != null) {
-            for (String uuidString : chatDataConfig.getConfigurationSection("invitations").getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(uuidString);
-                    List<String> invites = chatDataConfig.getStringList("invitations." + uuidString);
-                    chatInvitations.put(uuid, new HashSet<>(invites));
-                } catch (IllegalArgumentException e) {
-                    logToConsole("Invalid UUID in chat invitations: " + uuidString);
-                }
+        return compatibilityManager.supplyAsync(() -> {
+            if (!fileBackend.importChatDataFromYaml()) {
+                return false;
             }
-        }
+            membershipIndex.clear();
+            membershipIndex.loadAll(fileBackend.loadMemberships());
+            return true;
+        });
     }
 
-
     public CompletableFuture<Integer> getPlayerChannelCount(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                String selectSQL = "SELECT channel_count FROM player_channels WHERE player_uuid = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        if (rs.next()) {
-                            return rs.getInt("channel_count");
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error retrieving channel count for player " + playerUuid + ": " + e.getMessage());
-                }
-                return 0;
-            });
-        } else {
-            return CompletableFuture.completedFuture(channelCountCache.getOrDefault(playerUuid, 0));
-        }
+        return query(b -> b.getChannelCount(playerUuid));
     }
 
     public CompletableFuture<Void> incrementPlayerChannelCount(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String upsertSQL = """
-                    INSERT INTO player_channels (player_uuid, channel_count) 
-                    VALUES (?, 1) 
-                    ON DUPLICATE KEY UPDATE channel_count = channel_count + 1
-                    """;
-                try (PreparedStatement stmt = connection.prepareStatement(upsertSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error incrementing channel count for player " + playerUuid + ": " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                int currentCount = channelCountCache.getOrDefault(playerUuid, 0);
-                channelCountCache.put(playerUuid, currentCount + 1);
-                saveChannelDataToFile();
-            });
-        }
+        return update(b -> b.incrementChannelCount(playerUuid));
     }
 
     public CompletableFuture<Void> decrementPlayerChannelCount(UUID playerUuid) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = """
-                    UPDATE player_channels 
-                    SET channel_count = GREATEST(0, channel_count - 1) 
-                    WHERE player_uuid = ?
-                    """;
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error decrementing channel count for player " + playerUuid + ": " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                int currentCount = channelCountCache.getOrDefault(playerUuid, 0);
-                channelCountCache.put(playerUuid, Math.max(0, currentCount - 1));
-                saveChannelDataToFile();
-            });
-        }
+        return update(b -> b.decrementChannelCount(playerUuid));
     }
 
     public CompletableFuture<Void> recordChannelCreation(UUID playerUuid, String channelName) {
-        CompletableFuture<Void> incrementFuture = incrementPlayerChannelCount(playerUuid);
-
-        if (useDatabase && connection != null) {
-            return incrementFuture.thenRunAsync(() -> {
-                String insertSQL = """
-                    INSERT INTO channel_ownership (player_uuid, channel_name, server_name) 
-                    VALUES (?, ?, ?) 
-                    ON DUPLICATE KEY UPDATE is_active = TRUE, created_at = CURRENT_TIMESTAMP
-                    """;
-                try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, channelName);
-                    stmt.setString(3, getServerName());
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error recording channel creation: " + e.getMessage());
-                }
-            });
-        } else {
-            return incrementFuture.thenRunAsync(() -> {
-                String playerSection = "players." + playerUuid.toString() + ".channels";
-                channelDataConfig.set(playerSection + "." + channelName + ".created_at", System.currentTimeMillis());
-                channelDataConfig.set(playerSection + "." + channelName + ".is_active", true);
-                saveChannelDataToFile();
-            });
-        }
+        return incrementPlayerChannelCount(playerUuid)
+                .thenCompose(v -> update(b -> b.recordChannelCreation(playerUuid, channelName, getServerName())));
     }
 
     public CompletableFuture<Void> recordChannelDeletion(UUID playerUuid, String channelName) {
-        CompletableFuture<Void> decrementFuture = decrementPlayerChannelCount(playerUuid);
-
-        if (useDatabase && connection != null) {
-            return decrementFuture.thenRunAsync(() -> {
-                String updateSQL = "UPDATE channel_ownership SET is_active = FALSE WHERE player_uuid = ? AND channel_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, channelName);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error recording channel deletion: " + e.getMessage());
-                }
-            });
-        } else {
-            return decrementFuture.thenRunAsync(() -> {
-                String playerSection = "players." + playerUuid.toString() + ".channels";
-                channelDataConfig.set(playerSection + "." + channelName + ".is_active", false);
-                saveChannelDataToFile();
-            });
-        }
+        return decrementPlayerChannelCount(playerUuid)
+                .thenCompose(v -> update(b -> b.recordChannelDeletion(playerUuid, channelName)));
     }
 
     public void logChatMessage(String chatName, String sender, String message) {
-        String fullMsg = "[" + chatName + "] " + sender + ": " + message;
-
-        if (useDatabase && connection != null) {
-            compatibilityManager.runAsync(() -> {
-                try {
-                    insertChatMessage(chatName, sender, message);
-                } catch (SQLException e) {
-                    logToConsole("Failed to log message to database: " + e.getMessage());
-                }
-            });
+        // Whole seconds, as MySQL stores them, so a message in memory has exactly the time of its row
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        ChatMessage recent = recentHistory.isEnabled() ? new ChatMessage(sender, message, new Timestamp(now)) : null;
+        if (recent != null) {
+            recentHistory.add(chatName, recent);
         }
-    }
 
-    private void insertChatMessage(String chatName, String sender, String message) throws SQLException {
-        String insertSQL = "INSERT INTO chat_logs (chat_name, sender, message, server_name) VALUES (?, ?, ?, ?)";
+        ChatLogWriter writer = chatLogWriter;
+        if (writer != null) {
+            writer.submit(new ChatLogEntry(chatName, sender, message, getServerName(), now, recent));
+        }
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(insertSQL)) {
-            stmt.setString(1, chatName);
-            stmt.setString(2, sender);
-            stmt.setString(3, message);
-            stmt.setString(4, getServerName());
+    private void startChatLogWriter(ChatLogSink sink) {
+        FileConfiguration config = plugin.getConfig();
+        chatLogWriter = new ChatLogWriter(sink, plugin.getLogger(),
+                config.getInt("logging.queue-capacity", 10000),
+                config.getInt("logging.batch-size", 100),
+                config.getLong("logging.flush-interval-ms", 1000));
+    }
 
-            stmt.executeUpdate();
-        }
+    public ChatLogWriter getChatLogWriter() {
+        return chatLogWriter;
     }
 
     private String getServerName() {
@@ -1305,163 +519,108 @@ public class StorageManager {
     }
 
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                logToConsole("Database connection closed.");
-            } catch (SQLException e) {
-                logToConsole("Error closing database connection: " + e.getMessage());
-            }
+        if (logRetention != null) {
+            logRetention.stop();
+            logRetention = null;
+        }
+
+        if (eventSync != null) {
+            eventSync.stop();
+            eventSync = null;
+        }
+
+        if (chatLogWriter != null) {
+            chatLogWriter.close();
+            logToConsole("Chat log writer stopped: " + chatLogWriter.describeStats());
+            chatLogWriter = null;
         }
 
-        if (!useDatabase) {
-            saveChannelDataToFile();
-            saveChatDataToFile();
-            saveChannelsToFile();
+        if (backend != null) {
+            backend.close();
         }
     }
 
-    public CompletableFuture<java.util.List<ChatMessage>> getChatHistory(String chatName, int limit) {
-        return compatibilityManager.supplyAsync(() -> {
-            if (!useDatabase || connection == null) {
-                return new java.util.ArrayList<>();
-            }
+    public CompletableFuture<List<ChatMessage>> getChatHistory(String chatName, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+        return streamChatHistory(chatName, null, limit, messages::add).thenApply(count -> messages);
+    }
 
-            java.util.List<ChatMessage> messages = new java.util.ArrayList<>();
-            String selectSQL = "SELECT sender, message, timestamp FROM chat_logs WHERE chat_name = ? ORDER BY timestamp DESC LIMIT ?";
-
-            try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                stmt.setString(1, chatName);
-                stmt.setInt(2, limit);
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        messages.add(new ChatMessage(
-                                rs.getString("sender"),
-                                rs.getString("message"),
-                                rs.getTimestamp("timestamp")
-                        ));
-                    }
-                }
-            } catch (SQLException e) {
-                logToConsole("Error retrieving chat history: " + e.getMessage());
+    /**
+     * Passes up to limit messages of the chat to the consumer, newest first, and completes with how many.
+     * Pass null as before for the newest page, then the last message received for the page before it.
+     * The newest page comes from memory when enough recent messages are held and no other server writes the same
+     * chat log, older pages from the database. Without a database history everything comes from memory.
+     */
+    public CompletableFuture<Integer> streamChatHistory(String chatName, ChatMessage before, int limit, Consumer<ChatMessage> consumer) {
+        return ready.thenCompose(current -> {
+            if (!current.storesChatHistory()) {
+                return CompletableFuture.completedFuture(before == null
+                        ? recentHistory.readLatest(chatName, limit, consumer)
+                        : recentHistory.readBefore(chatName, before, limit, consumer));
+            }
+            if (before == null && !current.sharesChatLog() && recentHistory.size(chatName) >= limit) {
+                return CompletableFuture.completedFuture(recentHistory.readLatest(chatName, limit, consumer));
             }
 
-            return messages;
+            return query(b -> {
+                Timestamp beforeTimestamp = before != null ? before.timestamp : null;
+                // Below zero when the message was never stored: then the page starts at the rows of an earlier second
+                long beforeId = before != null ? Math.max(0, awaitRowId(before)) : 0;
+                return b.streamChatHistory(chatName, beforeTimestamp, beforeId, limit, consumer);
+            });
         });
     }
 
-    public CompletableFuture<Void> removeChatPermission(UUID playerUuid, String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String deleteSQL = "DELETE FROM chat_permissions WHERE player_uuid = ? AND chat_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(deleteSQL)) {
-                    stmt.setString(1, playerUuid.toString());
-                    stmt.setString(2, chatName);
-                    stmt.executeUpdate();
-                } catch (SQLException e) {
-                    logToConsole("Error removing chat permission: " + e.getMessage());
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                Map<UUID, String> chatPerms = chatPermissions.get(chatName);
-                if (chatPerms != null) {
-                    chatPerms.remove(playerUuid);
-                }
-                saveChatDataToFile();
-            });
+    // A message from memory gets its row id once the log writer has stored it, at most a flush interval or so away
+    private static long awaitRowId(ChatMessage message) {
+        try {
+            return message.awaitId(ROW_ID_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return message.getId();
         }
     }
 
-    public CompletableFuture<Void> deleteChannel(String channelName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.runAsync(() -> {
-                String updateSQL = "UPDATE custom_channels SET is_active = FALSE WHERE channel_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(updateSQL)) {
-                    stmt.setString(1, channelName);
-                    int rowsAffected = stmt.executeUpdate();
-                    if (rowsAffected > 0) {
-                        logToConsole("Deleted channel from database: " + channelName);
-                    } else {
-                        logToConsole("Channel not found in database: " + channelName);
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error deleting channel from database: " + e.getMessage());
-                    throw new RuntimeException(e);
-                }
-            });
-        } else {
-            return compatibilityManager.runAsync(() -> {
-                ChatChannel removed = channelCache.remove(channelName);
-                if (removed != null) {
-                    saveChannelsToFile();
-                    logToConsole("Deleted channel from file: " + channelName);
-                } else {
-                    logToConsole("Channel not found in cache: " + channelName);
-                }
-            });
+    public CompletableFuture<Set<UUID>> getChatMembers(String chatName) {
+        if (membershipIndex.isLoaded()) {
+            return CompletableFuture.completedFuture(membershipIndex.getMembers(chatName));
         }
+        return query(b -> b.getChatMembers(chatName));
     }
 
 
-    public CompletableFuture<Map<UUID, String>> getChatPermissions(String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                Map<UUID, String> permissions = new HashMap<>();
-                String selectSQL = "SELECT player_uuid, permission_level FROM chat_permissions WHERE chat_name = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, chatName);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            UUID uuid = UUID.fromString(rs.getString("player_uuid"));
-                            permissions.put(uuid, rs.getString("permission_level"));
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error getting chat permissions: " + e.getMessage());
-                }
-                return permissions;
-            });
-        } else {
-            return CompletableFuture.completedFuture(
-                    new HashMap<>(chatPermissions.getOrDefault(chatName, new HashMap<>()))
-            );
+    public ChannelMembershipIndex getMembershipIndex() {
+        return membershipIndex;
+    }
+
+    public Boolean getCachedBanStatus(UUID playerUuid) {
+        ChatStorageBackend current = backend;
+        if (current != null && current.readsFromMemory()) {
+            return current.isBanned(playerUuid);
         }
+        return stateCache.getBan(playerUuid);
     }
 
-    public CompletableFuture<Set<UUID>> getChatMembers(String chatName) {
-        if (useDatabase && connection != null) {
-            return compatibilityManager.supplyAsync(() -> {
-                Set<UUID> members = new HashSet<>();
-                String selectSQL = "SELECT player_uuid FROM chat_memberships WHERE chat_name = ? AND is_active = TRUE";
-                try (PreparedStatement stmt = connection.prepareStatement(selectSQL)) {
-                    stmt.setString(1, chatName);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        while (rs.next()) {
-                            members.add(UUID.fromString(rs.getString("player_uuid")));
-                        }
-                    }
-                } catch (SQLException e) {
-                    logToConsole("Error getting chat members: " + e.getMessage());
-                }
-                return members;
-            });
-        } else {
-            return compatibilityManager.supplyAsync(() -> {
-                Set<UUID> members = new HashSet<>();
-                for (Map.Entry<UUID, Set<String>> entry : userChatMemberships.entrySet()) {
-                    if (entry.getValue().contains(chatName)) {
-                        members.add(entry.getKey());
-                    }
-                }
-                return members;
-            });
+    public boolean isChatPermissionCached(UUID playerUuid, String chatName) {
+        if (!cachesState()) {
+            return true;
         }
+        return stateCache.hasPermissionEntry(playerUuid, chatName);
     }
 
+    public String getCachedChatPermission(UUID playerUuid, String chatName) {
+        ChatStorageBackend current = backend;
+        if (current != null && current.readsFromMemory()) {
+            return current.getPermission(playerUuid, chatName);
+        }
+        return stateCache.getPermission(playerUuid, chatName);
+    }
+
+    public void evictPlayerState(UUID playerUuid) {
+        stateCache.evict(playerUuid);
+    }
 
-    private void logToConsole(String msg) {
+    static void logToConsole(String msg) {
         Bukkit.getLogger().info("(Translations Service Unavailable for Storage related issues) [ChatControl] " + msg);
     }
 
@@ -1469,11 +628,39 @@ public class StorageManager {
         public final String sender;
         public final String message;
         public final Timestamp timestamp;
+        // Row id in chat_logs. For a message kept in memory 0 until the log writer stored it, -1 if it never will
+        private long id;
 
         public ChatMessage(String sender, String message, Timestamp timestamp) {
+            this(0, sender, message, timestamp);
+        }
+
+        public ChatMessage(long id, String sender, String message, Timestamp timestamp) {
+            this.id = id;
             this.sender = sender;
             this.message = message;
             this.timestamp = timestamp;
         }
+
+        public synchronized long getId() {
+            return id;
+        }
+
+        synchronized void setId(long id) {
+            this.id = id;
+            notifyAll();
+        }
+
+        synchronized long awaitId(long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (id == 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                wait(remaining);
+            }
+            return id;
+        }
     }
 }
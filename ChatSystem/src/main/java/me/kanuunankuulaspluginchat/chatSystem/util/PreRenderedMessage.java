@@ -0,0 +1,49 @@
+package me.kanuunankuulaspluginchat.chatSystem.util;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.command.CommandSender;
+
+/**
+ * A chat line that is rendered once and then sent to every recipient.
+ * On Paper/Folia the legacy § codes are parsed into a single Adventure component up front,
+ * so the server does not have to parse the same string again for each player.
+ */
+public abstract class PreRenderedMessage {
+
+    public abstract void sendTo(CommandSender recipient);
+
+    public static PreRenderedMessage of(String legacyMessage, boolean useComponents) {
+        if (useComponents) {
+            return new ComponentMessage(legacyMessage);
+        }
+        return new LegacyMessage(legacyMessage);
+    }
+
+    private static class LegacyMessage extends PreRenderedMessage {
+        private final String message;
+
+        private LegacyMessage(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public void sendTo(CommandSender recipient) {
+            recipient.sendMessage(message);
+        }
+    }
+
+    // Only ever loaded when Adventure is on the server (Paper and Folia)
+    private static class ComponentMessage extends PreRenderedMessage {
+        private final Component component;
+
+        private ComponentMessage(String message) {
+            this.component = LegacyComponentSerializer.legacySection().deserialize(message);
+        }
+
+        @Override
+        public void sendTo(CommandSender recipient) {
+            recipient.sendMessage(component);
+        }
+    }
+}